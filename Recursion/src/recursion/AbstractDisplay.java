@@ -8,7 +8,10 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
  * An abstract display displays a fractal that can be rendered pixel by
@@ -29,6 +32,12 @@ abstract class AbstractDisplay extends JPanel implements
      * The initial max iterations.
      */
     public static final int START_T = 256;
+    /**
+     * The fraction of a pixel by which the pixels of a view may miss those
+     * of the last one for them to be reused. Views that miss them by more
+     * than rounding, such as centers typed in, sample other points.
+     */
+    private static final double RESAMPLE_TOLERANCE = 1e-9;
 
     /**
      * The simulator for this fractal.
@@ -50,28 +59,76 @@ abstract class AbstractDisplay extends JPanel implements
      */
     private double s;
     /**
-     * The current center x.
+     * The current center x, which is kept exactly so that deep zooms do
+     * not run out of precision.
      */
-    private double xc;
+    private BigDecimal xc;
     /**
      * The current center y.
      */
-    private double yc;
+    private BigDecimal yc;
 
     /**
-     * Whether the renderer is active.
+     * The generation of the newest render. Passes of older renders are
+     * never shown.
+     */
+    private volatile int generation;
+    /**
+     * The newest render, which is cancelled once another is requested.
+     */
+    private CompletableFuture<BufferedImage> frame;
+
+    /**
+     * The renderer of the newest render.
+     */
+    private AbstractRenderer renderer;
+    /**
+     * The escape time values of the newest render, whose pixels are reused
+     * when the next view is panned by whole pixels or zoomed by two.
+     */
+    private int[] values;
+    /**
+     * The fractions of the escape times of the newest render, or null if
+     * it is not colored smoothly.
      */
-    private volatile boolean rendering;
+    private float[] fractions;
+    /**
+     * The center of the newest render.
+     */
+    private BigDecimal lastXc, lastYc;
+    /**
+     * The zoom scale of the newest render.
+     */
+    private double lastS;
+    /**
+     * The maximum iterations of the newest render.
+     */
+    private int lastT;
 
     /**
      * The color map used to color the fractal.
      */
     private ColorMap cm;
 
+    /**
+     * Whether uniform regions are skipped by subdivision.
+     */
+    private boolean subdivide;
+
+    /**
+     * Whether tiles are computed by the vectorized kernel.
+     */
+    private boolean vectorized;
+
+    /**
+     * Whether the fractal is colored smoothly, by fractional escape times.
+     */
+    private boolean smooth;
+
     /**
      * The image that represents the display.
      */
-    private final BufferedImage img;
+    private volatile BufferedImage img;
 
     /**
      * Create a new display.
@@ -87,8 +144,8 @@ abstract class AbstractDisplay extends JPanel implements
         img = new BufferedImage(N, N, BufferedImage.TYPE_INT_RGB);
 
         // Initialize the fractal parameters
-        xc = 0.0;
-        yc = 0.0;
+        xc = BigDecimal.ZERO;
+        yc = BigDecimal.ZERO;
         s = START_ZOOM;
         T = 256;
 
@@ -98,7 +155,15 @@ abstract class AbstractDisplay extends JPanel implements
         init();
     }
 
-    public void changeParameters(double xc, double yc,
+    /**
+     * Change the fractal parameters.
+     *
+     * @param xc the new center x
+     * @param yc the new center y
+     * @param s the new zoom scale
+     * @param T the new maximum iterations
+     */
+    public void changeParameters(BigDecimal xc, BigDecimal yc,
             double s, int T) {
         this.xc = xc;
         this.yc = yc;
@@ -108,7 +173,9 @@ abstract class AbstractDisplay extends JPanel implements
     }
 
     /**
-     * Change the fractal parameters.
+     * Change the fractal parameters. If only the color map has changed and
+     * the newest render is finished, its escape time values are colored
+     * again instead of being computed.
      *
      * @param xc the new center x
      * @param yc the new center y
@@ -116,13 +183,91 @@ abstract class AbstractDisplay extends JPanel implements
      * @param T the new maximum iterations
      * @param cm the new color map
      */
-    public void changeParameters(double xc, double yc,
+    public void changeParameters(BigDecimal xc, BigDecimal yc,
             double s, int T,
             ColorMap cm) {
         this.cm = cm;
+        if (isFinished(xc, yc, s, T)) {
+            recolor();
+            return;
+        }
         changeParameters(xc, yc, s, T);
     }
 
+    /**
+     * Change the color map of the current view. If the newest render is
+     * finished, its escape time values are colored again instead of being
+     * computed.
+     *
+     * @param cm the new color map
+     */
+    public void setColorMap(ColorMap cm) {
+        changeParameters(xc, yc, s, T, cm);
+    }
+
+    /**
+     * Check whether the newest render is of a view and has finished, so
+     * that every escape time value of the view is known.
+     *
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param T the maximum iterations
+     * @return whether the view has been rendered in full
+     */
+    private boolean isFinished(BigDecimal xc, BigDecimal yc, double s,
+            int T) {
+        return values != null && frame != null && frame.isDone()
+                && !frame.isCompletedExceptionally()
+                && xc.compareTo(lastXc) == 0 && yc.compareTo(lastYc) == 0
+                && s == lastS && T == lastT;
+    }
+
+    /**
+     * Color the escape time values of the newest render with the current
+     * color map and show them.
+     */
+    private void recolor() {
+        BufferedImage nextImg = new BufferedImage(N, N,
+                BufferedImage.TYPE_INT_RGB);
+        renderer.color(nextImg, cm, values, fractions, 1);
+        img = nextImg;
+        repaint();
+    }
+
+    /**
+     * Change whether the fractal is rendered by subdivision, which skips
+     * the regions inside the set.
+     *
+     * @param subdivide whether to subdivide
+     */
+    public void setSubdivide(boolean subdivide) {
+        this.subdivide = subdivide;
+        render();
+    }
+
+    /**
+     * Change whether the fractal is rendered by the vectorized kernel,
+     * which iterates several points side by side.
+     *
+     * @param vectorized whether to use the vectorized kernel
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+        render();
+    }
+
+    /**
+     * Change whether the fractal is colored smoothly, by the fractions of
+     * the escape times as well as the whole escape times.
+     *
+     * @param smooth whether to color smoothly
+     */
+    public void setSmooth(boolean smooth) {
+        this.smooth = smooth;
+        render();
+    }
+
     /**
      * Update the simulator with the changed fractal parameters.
      */
@@ -143,19 +288,90 @@ abstract class AbstractDisplay extends JPanel implements
     }
 
     /**
-     * Render the fractal.
+     * Render the fractal in the background. The render is progressive, so
+     * the display is repainted after each pass. Requesting a render
+     * cancels the one in progress, so that only the newest view is
+     * finished and shown.
      */
     protected void render() {
-        rendering = true;
-
-        // Get the correct renderer and then render the fractal
-        AbstractRenderer renderer = getRenderer(N, T);
-        renderer.render(img, cm, xc, yc, s);
-        // Update the parameters to the simulator and repaint the display
+        if (frame != null) {
+            frame.cancel(false);
+        }
+        int gen = ++generation;
+
+        // Get the correct renderer and then render the fractal to a new
+        // image, which is shown once its first pass is done
+        renderer = getRenderer(N, T, s);
+        renderer.setSubdivide(subdivide);
+        renderer.setVectorized(vectorized);
+        int[] next = renderer.createValues();
+        float[] nextFractions = smooth ? renderer.createFractions() : null;
+        if (values != null && T == lastT && (fractions != null) == smooth) {
+            // Keep the pixels that lie on pixels of the last view after a
+            // pan or a zoom by two. Those of a cancelled render that were
+            // computed are as good as any
+            int a = s == 2 * lastS ? 2 : 1;
+            int b = s == lastS / 2 ? 2 : 1;
+            if (s == lastS * a / b) {
+                int dx = toOffset(xc.subtract(lastXc), a, b);
+                int dy = toOffset(yc.subtract(lastYc), a, b);
+                renderer.resample(values, next, a, b, dx, dy);
+                if (smooth) {
+                    renderer.resample(fractions, nextFractions, a, b,
+                            dx, dy);
+                }
+            }
+        }
+        values = next;
+        fractions = nextFractions;
+        lastXc = xc;
+        lastYc = yc;
+        lastS = s;
+        lastT = T;
+        // Show the requested view in the simulator straight away, so that
+        // its fields are current while the view renders
         updateParameters();
-        repaint();
+        BufferedImage nextImg = new BufferedImage(N, N,
+                BufferedImage.TYPE_INT_RGB);
+        frame = renderer.renderAsync(nextImg, cm, next, nextFractions,
+                xc, yc, s, () -> {
+            SwingUtilities.invokeLater(() -> {
+                if (gen == generation) {
+                    img = nextImg;
+                    repaint();
+                }
+            });
+        });
+    }
 
-        rendering = false;
+    /**
+     * Forget the escape time values of the newest render, so that the next
+     * render computes every pixel. This has to be done whenever the fractal
+     * itself changes.
+     */
+    protected void discardValues() {
+        values = null;
+        fractions = null;
+    }
+
+    /**
+     * Find the offset of the pixels of a new view from those of the last
+     * view along one axis, so that pixel r of the new view lies on pixel
+     * (a r + d) / b of the last one.
+     *
+     * @param dc how far the center has moved along the axis
+     * @param a the zoom factor numerator
+     * @param b the zoom factor denominator
+     * @return the offset d, or 2N if the pixels do not line up
+     */
+    private int toOffset(BigDecimal dc, int a, int b) {
+        double d = b * (dc.doubleValue() * N / lastS + N / 2.0)
+                - a * N / 2.0;
+        long m = Math.round(d);
+        if (Math.abs(d - m) > RESAMPLE_TOLERANCE || Math.abs(m) >= 2 * N) {
+            return 2 * N;
+        }
+        return (int) m;
     }
 
     /**
@@ -164,9 +380,11 @@ abstract class AbstractDisplay extends JPanel implements
      *
      * @param N the rendering dimension N by N
      * @param T the maximum number of iterations
+     * @param s the zoom scale, which decides how precise the renderer has
+     * to be
      * @return a fractal renderer
      */
-    public abstract AbstractRenderer getRenderer(int N, int T);
+    public abstract AbstractRenderer getRenderer(int N, int T, double s);
 
     /**
      * Paint the display as the fractal image.
@@ -187,18 +405,16 @@ abstract class AbstractDisplay extends JPanel implements
      */
     @Override
     public void mouseClicked(MouseEvent me) {
-        if (!rendering) {
-            if (me.getButton() == MouseEvent.BUTTON1) {
-                // Left mouse button recenters screen on mouse
-                Point p = me.getPoint();
-                xc += (p.x - N / 2) * s / N;
-                yc += (p.y - N / 2) * s / N;
-            } else if (me.getButton() == MouseEvent.BUTTON3) {
-                // Right mouse button zooms in magnification M = 5
-                s /= 5;
-            }
-            render();
+        if (me.getButton() == MouseEvent.BUTTON1) {
+            // Left mouse button recenters screen on mouse
+            Point p = me.getPoint();
+            xc = xc.add(BigDecimal.valueOf((p.x - N / 2) * s / N));
+            yc = yc.add(BigDecimal.valueOf((p.y - N / 2) * s / N));
+        } else if (me.getButton() == MouseEvent.BUTTON3) {
+            // Right mouse button zooms in magnification M = 5
+            s /= 5;
         }
+        render();
     }
 
     /**
@@ -1,24 +1,66 @@
 package recursion;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+import static java.lang.Math.abs;
+import static java.lang.Math.log;
+
 /**
- * A general rendering thread of a fractal that is computed pixel by pixel.
+ * The rendering logic of a fractal that is computed pixel by pixel. One
+ * instance is created for each render and shared by all of the render
+ * tasks, each of which renders a tile of pixels through it.
  *
  * @author Jeff Niu
  */
-public abstract class AbstractRenderThread extends Thread {
+public abstract class AbstractRenderThread {
 
     /**
-     * The render parameters. N is the render dimension, T is the maximum
-     * number of iterations, and the rest define the region in which this
-     * particular thread renders the fractal.
+     * The value of a pixel that has not been computed yet.
+     */
+    public static final int UNKNOWN = -1;
+    /**
+     * The value of a pixel inside the set, which never escapes.
      */
-    private final int Wi, Wf, Hi, Hf, N, T;
+    public static final int INSIDE = 0;
+
+    /**
+     * The periodicity tolerance as a fraction of the distance between two
+     * pixels.
+     */
+    private static final double PERIODICITY_TOLERANCE = 1e-4;
+    /**
+     * The factor by which a double is split into two halves of 26 bits,
+     * so that the product of two halves is exact (Dekker's method).
+     */
+    private static final double SPLIT = 134217729.0;
+    /**
+     * The square of the radius past which an escaped orbit is followed to
+     * find the fraction of its escape time. The larger it is, the closer
+     * the orbit is to pure squaring, and the smoother the fractions.
+     */
+    private static final double SMOOTH_BAILOUT = 1 << 16;
+    /**
+     * The most iterations for which an escaped orbit is followed.
+     */
+    private static final int SMOOTH_ITERATIONS = 64;
+
+    /**
+     * The render parameters. N is the render dimension and T is the
+     * maximum number of iterations.
+     */
+    private final int N, T;
 
     /**
      * An array of resultant values computed at each pixel.
      */
     private final int[] values;
 
+    /**
+     * The fractions of the escape times of the pixels, or null if they are
+     * not computed.
+     */
+    private float[] fractions;
+
     /**
      * The fractal parameters. (xc, yc) is the center point and s is the
      * zoom scale.
@@ -26,11 +68,35 @@ public abstract class AbstractRenderThread extends Thread {
     private final double xc, yc, s;
 
     /**
-     * Create a new render thread. Each thread will render a vertical strip
-     * of pixels.
+     * The parts of the center that double cannot hold, which are added to
+     * the center when the pixels are computed in double-double.
+     */
+    private double xcLo, ycLo;
+
+    /**
+     * Whether the pixels are computed in double-double.
+     */
+    private boolean precise;
+
+    /**
+     * How close an orbit has to come back to an earlier point to be taken
+     * as periodic. Zero turns periodicity checking off.
+     */
+    private double tolerance;
+
+    /**
+     * Whether tiles are computed by the vectorized kernel.
+     */
+    private boolean vectorized;
+
+    /**
+     * Whether the render has been cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Create a new render thread.
      *
-     * @param Wi the start x
-     * @param Wf the finish x
      * @param N the render dimension
      * @param T the maximum number of iterations
      * @param values the array to which the computed values will be stored
@@ -38,34 +104,275 @@ public abstract class AbstractRenderThread extends Thread {
      * @param yc the center y
      * @param s the zoom scale
      */
-    public AbstractRenderThread(int Wi, int Wf, int N, int T,
-            int[] values, double xc, double yc, double s) {
-        this.Wi = Wi;
-        this.Wf = Wf;
+    public AbstractRenderThread(int N, int T, int[] values,
+            double xc, double yc, double s) {
         this.N = N;
         this.T = T;
         this.values = values;
         this.xc = xc;
         this.yc = yc;
         this.s = s;
-        Hi = 0;
-        Hf = N;
+        tolerance = PERIODICITY_TOLERANCE * s / N;
+    }
+
+    /**
+     * Set whether orbits are checked for periodicity, which is on by
+     * default. An orbit that has settled into an attracting cycle will
+     * never escape, so its point is inside the set and need not be
+     * iterated up to the maximum iterations. The tolerance shrinks with
+     * the zoom scale so that deep zooms stay accurate.
+     *
+     * @param check whether to check for periodicity
+     */
+    public void setPeriodicityCheck(boolean check) {
+        tolerance = check ? PERIODICITY_TOLERANCE * s / N : 0;
     }
 
     /**
-     * Render the vertical strip.
+     * Set whether tiles are computed by the vectorized kernel, which
+     * iterates several points at a time, instead of point by point.
+     *
+     * @param vectorized whether to use the vectorized kernel
      */
-    @Override
-    public void run() {
-        for (int r = Wi; r < Wf; r++) {
-            for (int i = Hf - 1; i >= Hi; i--) {
-                double x0 = xc + s * (r / (double) N - 0.5);
-                double y0 = yc + s * (i / (double) N - 0.5);
-                values[r * N + i] = T - compute(x0, y0, T);
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    /**
+     * Set the array to which the fractions of the escape times of the
+     * pixels are stored, so that they can be colored smoothly. The escape
+     * times stay whole, and the fraction of each pixel is how much later
+     * than its escape time its orbit would have escaped, had it been
+     * squared all along. Pixels are then computed point by point in
+     * double, since the other kernels do not follow escaped orbits;
+     * pixels computed in double-double get no fraction.
+     *
+     * @param fractions the fractions, or null not to compute them
+     */
+    public void setFractions(float[] fractions) {
+        this.fractions = fractions;
+    }
+
+    /**
+     * Compute the pixels in double-double, that is, as the unevaluated sum
+     * of two doubles, which carries about twice the precision of a double.
+     * This is for zooms at which the pixels are closer together than a
+     * double can tell apart. The center is given exactly, so that it keeps
+     * the same precision.
+     *
+     * @param xc the exact center x
+     * @param yc the exact center y
+     */
+    public void setPreciseCenter(BigDecimal xc, BigDecimal yc) {
+        xcLo = xc.subtract(new BigDecimal(this.xc)).doubleValue();
+        ycLo = yc.subtract(new BigDecimal(this.yc)).doubleValue();
+        precise = true;
+    }
+
+    /**
+     * Get the periodicity tolerance. An orbit that comes back within this
+     * distance of an earlier point is periodic.
+     *
+     * @return the tolerance, or zero if periodicity is not checked
+     */
+    protected double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Render the pixels of a tile that lie on a grid of the given step,
+     * that is, whose x and y are both multiples of the step. Pixels that
+     * already have a value are not computed again. Tiles rendered
+     * concurrently must not overlap. Rendering stops early, leaving the
+     * rest of the tile unknown, once the render has been cancelled.
+     *
+     * @param Wi the start x
+     * @param Wf the finish x
+     * @param Hi the start y
+     * @param Hf the finish y
+     * @param step the grid step
+     */
+    public void render(int Wi, int Wf, int Hi, int Hf, int step) {
+        // Start from the first grid line inside the tile
+        int ri = (Wi + step - 1) / step * step;
+        int ii = (Hi + step - 1) / step * step;
+        if (vectorized && !precise && fractions == null) {
+            renderVectorized(ri, Wf, ii, Hf, step);
+            return;
+        }
+        for (int r = ri; r < Wf; r += step) {
+            if (cancelled) {
+                return;
+            }
+            for (int i = ii; i < Hf; i += step) {
+                render(r, i);
+            }
+        }
+    }
+
+    /**
+     * Render the pixels of a tile on a grid of the given step through the
+     * vectorized kernel. The pixels of each column that have no value are
+     * gathered first and then computed all together, and the rest of the
+     * tile is skipped once the render has been cancelled.
+     *
+     * @param ri the first grid x
+     * @param Wf the finish x
+     * @param ii the first grid y
+     * @param Hf the finish y
+     * @param step the grid step
+     */
+    private void renderVectorized(int ri, int Wf, int ii, int Hf,
+            int step) {
+        int H = (Hf - ii + step - 1) / step;
+        if (H <= 0) {
+            return;
+        }
+        int[] pixels = new int[H];
+        double[] x0 = new double[H];
+        double[] y0 = new double[H];
+        int[] t = new int[H];
+        for (int r = ri; r < Wf; r += step) {
+            if (cancelled) {
+                return;
+            }
+            int n = 0;
+            for (int i = ii; i < Hf; i += step) {
+                int g = r * N + i;
+                if (values[g] == UNKNOWN) {
+                    pixels[n] = g;
+                    x0[n] = xc + s * (r / (double) N - 0.5);
+                    y0[n] = yc + s * (i / (double) N - 0.5);
+                    n++;
+                }
+            }
+            compute(x0, y0, t, n, T);
+            for (int k = 0; k < n; k++) {
+                values[pixels[k]] = T - t[k];
             }
         }
     }
 
+    /**
+     * Render the border of a tile, that is, its outermost rows and columns
+     * of pixels on a grid of the given step, and check whether the whole
+     * border lies inside the set.
+     *
+     * @param Wi the start x
+     * @param Wf the finish x
+     * @param Hi the start y
+     * @param Hf the finish y
+     * @param step the grid step
+     * @return whether the border lies inside the set
+     */
+    public boolean renderBorder(int Wi, int Wf, int Hi, int Hf, int step) {
+        // The first and last grid lines inside the tile
+        int ri = (Wi + step - 1) / step * step;
+        int rf = (Wf - 1) / step * step;
+        int ii = (Hi + step - 1) / step * step;
+        int iF = (Hf - 1) / step * step;
+        if (ri > rf || ii > iF) {
+            return false;
+        }
+        // Render the whole border, since the halves of the tile share it
+        // if it has to be split
+        boolean inside = true;
+        for (int r = ri; r <= rf; r += step) {
+            inside &= render(r, ii) == INSIDE;
+            inside &= render(r, iF) == INSIDE;
+        }
+        for (int i = ii; i <= iF; i += step) {
+            inside &= render(ri, i) == INSIDE;
+            inside &= render(rf, i) == INSIDE;
+        }
+        return inside && !cancelled;
+    }
+
+    /**
+     * Fill the pixels of a tile on a grid of the given step that have not
+     * been computed with a value.
+     *
+     * @param Wi the start x
+     * @param Wf the finish x
+     * @param Hi the start y
+     * @param Hf the finish y
+     * @param step the grid step
+     * @param value the value with which to fill the tile
+     */
+    public void fill(int Wi, int Wf, int Hi, int Hf, int step, int value) {
+        int ri = (Wi + step - 1) / step * step;
+        int ii = (Hi + step - 1) / step * step;
+        for (int r = ri; r < Wf; r += step) {
+            for (int i = ii; i < Hf; i += step) {
+                if (values[r * N + i] == UNKNOWN) {
+                    values[r * N + i] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Render a single pixel, unless it already has a value.
+     *
+     * @param r the pixel x
+     * @param i the pixel y
+     * @return the value of the pixel
+     */
+    private int render(int r, int i) {
+        int g = r * N + i;
+        if (values[g] == UNKNOWN) {
+            values[g] = sample(r, i, fractions, g);
+        }
+        return values[g];
+    }
+
+    /**
+     * Compute the escape time value at a point of the view given in
+     * pixels, which need not fall on a pixel, along with the fraction of
+     * its escape time if an array is given for it. Points are placed as
+     * pixels are, so that a point that falls on a pixel has its value.
+     *
+     * @param r the x in pixels
+     * @param i the y in pixels
+     * @param f the array to which the fraction will be stored, or null
+     * @param k the index at which to store the fraction
+     * @return the escape time value
+     */
+    public int sample(double r, double i, float[] f, int k) {
+        double dx = s * (r / N - 0.5);
+        double dy = s * (i / N - 0.5);
+        double x0 = xc + dx;
+        double y0 = yc + dy;
+        if (precise) {
+            // Keep the rounding error of adding the offset of the pixel to
+            // the center (Knuth's two-sum)
+            double vx = x0 - xc;
+            double vy = y0 - yc;
+            double x0Lo = (xc - (x0 - vx)) + (dx - vx) + xcLo;
+            double y0Lo = (yc - (y0 - vy)) + (dy - vy) + ycLo;
+            return T - compute(x0, x0Lo, y0, y0Lo, T);
+        } else if (f != null) {
+            return T - compute(x0, y0, T, f, k);
+        } else {
+            return T - compute(x0, y0, T);
+        }
+    }
+
+    /**
+     * Cancel the render. Tiles that are being rendered stop after their
+     * current column and tiles that have not been started are skipped.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return whether the render has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
      * This algorithm will compute the escape time t at a particular pixel.  
      * 
@@ -76,4 +383,298 @@ public abstract class AbstractRenderThread extends Thread {
      */
     public abstract int compute(double x0, double y0, int T);
 
+    /**
+     * Compute the escape time at a point, along with the fraction of it.
+     * Fractals that have no smooth kernel store no fraction.
+     *
+     * @param x0 the x coordinate
+     * @param y0 the y coordinate
+     * @param T the maximum number of iterations
+     * @param f the array to which the fraction will be stored
+     * @param k the index at which to store the fraction
+     * @return the escape time
+     */
+    public int compute(double x0, double y0, int T, float[] f, int k) {
+        return compute(x0, y0, T);
+    }
+
+    /**
+     * Find the fraction of the escape time of an orbit that has just
+     * escaped. The orbit is followed on until it leaves a far larger
+     * radius, past which squaring dominates, so that |z| has been squared
+     * about once more for every iteration; how far it is past that radius
+     * tells, through log log |z|, how much of an iteration it is ahead of
+     * one that would have just reached it. The fraction is the continuous
+     * escape time less the whole one, which is between zero and one when
+     * c is small next to the escape radius and strays a little past them
+     * otherwise. An orbit that does not leave the larger radius within
+     * {@link #SMOOTH_ITERATIONS} has a fraction of zero.
+     *
+     * @param x the real part of the orbit point that escaped
+     * @param y the imaginary part of the orbit point that escaped
+     * @param a the c real part
+     * @param b the c imaginary part
+     * @return the fraction of the escape time
+     */
+    protected static float fraction(double x, double y, double a, double b) {
+        double xSq = x * x;
+        double ySq = y * y;
+        int k = 0;
+        while (xSq + ySq < SMOOTH_BAILOUT && k < SMOOTH_ITERATIONS) {
+            y = x * y;
+            y += y;
+            y += b;
+            x = xSq - ySq + a;
+            xSq = x * x;
+            ySq = y * y;
+            k++;
+        }
+        if (xSq + ySq < SMOOTH_BAILOUT) {
+            // The orbit never left the larger radius, as for c = -2, whose
+            // orbit stays at |z| = 2, so it has no fraction to tell
+            return 0;
+        }
+        // log2 log2 |z|, where log2 |z| = ln |z|^2 / (2 ln 2)
+        double ln2 = log(2);
+        return (float) (k + 1 - log(log(xSq + ySq) / (2 * ln2)) / ln2);
+    }
+
+    /**
+     * Compute the escape time at a point given in double-double. Fractals
+     * that have no double-double kernel compute it in double.
+     *
+     * @param x0 the x coordinate
+     * @param x0Lo the low part of the x coordinate
+     * @param y0 the y coordinate
+     * @param y0Lo the low part of the y coordinate
+     * @param T the maximum number of iterations
+     * @return the escape time
+     */
+    public int compute(double x0, double x0Lo, double y0, double y0Lo,
+            int T) {
+        return compute(x0, y0, T);
+    }
+
+    /**
+     * Compute the escape times of several points. Fractals that have a
+     * vectorized kernel iterate the points through it; otherwise the
+     * points are computed one by one.
+     *
+     * @param x0 the x coordinates
+     * @param y0 the y coordinates
+     * @param t the array to which the escape times will be stored
+     * @param n the number of points
+     * @param T the maximum number of iterations
+     */
+    public void compute(double[] x0, double[] y0, int[] t, int n, int T) {
+        for (int k = 0; k < n; k++) {
+            t[k] = compute(x0[k], y0[k], T);
+        }
+    }
+
+    /**
+     * The vectorized kernel. This iterates z = z^2 + c for several points
+     * at a time in four lanes that step in lock step, so that the
+     * processor can overlap the arithmetic of independent orbits instead
+     * of waiting on the latency of a single orbit. As soon as the point in
+     * a lane escapes or reaches the maximum iterations, the lane is
+     * refilled with the next point, so that no lane sits idle while the
+     * others are still iterating. Periodicity is not checked.
+     *
+     * @param zx the initial z real parts
+     * @param zy the initial z imaginary parts
+     * @param cx the c real parts
+     * @param cy the c imaginary parts
+     * @param t the array to which the escape times will be stored
+     * @param n the number of points
+     * @param T the maximum number of iterations
+     */
+    protected static void iterate(double[] zx, double[] zy,
+            double[] cx, double[] cy, int[] t, int n, int T) {
+        // The orbit, point and iteration count of each lane, and the
+        // index of the point that each lane is iterating, which is
+        // negative when the lane is idle. An idle lane iterates the fixed
+        // point z = c = 0 and counts up from the lowest integer, so that
+        // it never stops the others.
+        double[] x = new double[4];
+        double[] y = new double[4];
+        double[] a = new double[4];
+        double[] b = new double[4];
+        int[] it = new int[4];
+        int[] k = new int[4];
+        Arrays.fill(k, -1);
+        Arrays.fill(it, Integer.MIN_VALUE);
+        int next = 0; // the next point to load into a lane
+        int done = 0; // the number of points computed
+        while (done < n) {
+            // Refill the lanes whose points are done
+            for (int l = 0; l < 4; l++) {
+                if (k[l] >= 0 && (x[l] * x[l] + y[l] * y[l] < 4
+                        && it[l] < T)) {
+                    continue;
+                }
+                if (k[l] >= 0) {
+                    t[k[l]] = it[l];
+                    done++;
+                }
+                if (next < n) {
+                    k[l] = next;
+                    x[l] = zx[next];
+                    y[l] = zy[next];
+                    a[l] = cx[next];
+                    b[l] = cy[next];
+                    it[l] = 0;
+                    next++;
+                } else {
+                    k[l] = -1;
+                    x[l] = y[l] = a[l] = b[l] = 0;
+                    it[l] = Integer.MIN_VALUE;
+                }
+            }
+            if (done == n) {
+                break;
+            }
+            // Iterate every lane until one of them is done
+            double x0 = x[0], y0 = y[0], a0 = a[0], b0 = b[0];
+            double x1 = x[1], y1 = y[1], a1 = a[1], b1 = b[1];
+            double x2 = x[2], y2 = y[2], a2 = a[2], b2 = b[2];
+            double x3 = x[3], y3 = y[3], a3 = a[3], b3 = b[3];
+            double x0Sq = x0 * x0, y0Sq = y0 * y0;
+            double x1Sq = x1 * x1, y1Sq = y1 * y1;
+            double x2Sq = x2 * x2, y2Sq = y2 * y2;
+            double x3Sq = x3 * x3, y3Sq = y3 * y3;
+            int t0 = it[0], t1 = it[1], t2 = it[2], t3 = it[3];
+            while (x0Sq + y0Sq < 4 && x1Sq + y1Sq < 4
+                    && x2Sq + y2Sq < 4 && x3Sq + y3Sq < 4
+                    && t0 < T && t1 < T && t2 < T && t3 < T) {
+                y0 = x0 * y0;
+                y0 += y0;
+                y0 += b0;
+                x0 = x0Sq - y0Sq + a0;
+                x0Sq = x0 * x0;
+                y0Sq = y0 * y0;
+                y1 = x1 * y1;
+                y1 += y1;
+                y1 += b1;
+                x1 = x1Sq - y1Sq + a1;
+                x1Sq = x1 * x1;
+                y1Sq = y1 * y1;
+                y2 = x2 * y2;
+                y2 += y2;
+                y2 += b2;
+                x2 = x2Sq - y2Sq + a2;
+                x2Sq = x2 * x2;
+                y2Sq = y2 * y2;
+                y3 = x3 * y3;
+                y3 += y3;
+                y3 += b3;
+                x3 = x3Sq - y3Sq + a3;
+                x3Sq = x3 * x3;
+                y3Sq = y3 * y3;
+                t0++;
+                t1++;
+                t2++;
+                t3++;
+            }
+            x[0] = x0;
+            y[0] = y0;
+            it[0] = t0;
+            x[1] = x1;
+            y[1] = y1;
+            it[1] = t1;
+            x[2] = x2;
+            y[2] = y2;
+            it[2] = t2;
+            x[3] = x3;
+            y[3] = y3;
+            it[3] = t3;
+        }
+    }
+
+    /**
+     * The double-double kernel. This iterates z = z^2 + c with every
+     * number held as the unevaluated sum of a high and a low double. The
+     * products are made exact by splitting the factors (Dekker's method)
+     * and the sums by keeping their rounding errors (Knuth's two-sum), all
+     * in local variables so that nothing is allocated while iterating.
+     * Periodicity is checked as in the double kernels.
+     *
+     * @param x the initial z real part
+     * @param xLo the low part of the initial z real part
+     * @param y the initial z imaginary part
+     * @param yLo the low part of the initial z imaginary part
+     * @param a the c real part
+     * @param aLo the low part of the c real part
+     * @param b the c imaginary part
+     * @param bLo the low part of the c imaginary part
+     * @param T the maximum number of iterations
+     * @param eps the periodicity tolerance, or zero not to check
+     * @return the escape time
+     */
+    protected static int iteratePrecise(double x, double xLo,
+            double y, double yLo, double a, double aLo, double b, double bLo,
+            int T, double eps) {
+        // The orbit point against which periodicity is checked
+        double xp = x;
+        double xpLo = xLo;
+        double yp = y;
+        double ypLo = yLo;
+        int p = 1;
+        int t = 0;
+        while (t < T) {
+            // Split x and y into halves whose products are exact
+            double u = SPLIT * x;
+            double xHi = u - (u - x);
+            double xTail = x - xHi;
+            u = SPLIT * y;
+            double yHi = u - (u - y);
+            double yTail = y - yHi;
+            // x^2 and y^2
+            double xSq = x * x;
+            double xSqLo = ((xHi * xHi - xSq) + 2 * xHi * xTail)
+                    + xTail * xTail + 2 * x * xLo;
+            double ySq = y * y;
+            double ySqLo = ((yHi * yHi - ySq) + 2 * yHi * yTail)
+                    + yTail * yTail + 2 * y * yLo;
+            if (xSq + ySq >= 4) {
+                break;
+            }
+            // y = 2xy + b
+            double xy = x * y;
+            double xyLo = ((xHi * yHi - xy) + xHi * yTail + xTail * yHi)
+                    + xTail * yTail + x * yLo + xLo * y;
+            xy += xy;
+            xyLo += xyLo;
+            double sum = xy + b;
+            double v = sum - xy;
+            double err = (xy - (sum - v)) + (b - v) + xyLo + bLo;
+            y = sum + err;
+            yLo = err - (y - sum);
+            // x = x^2 - y^2 + a
+            sum = xSq - ySq;
+            v = sum - xSq;
+            err = (xSq - (sum - v)) - (ySq + v) + xSqLo - ySqLo;
+            double d = sum + err;
+            double dLo = err - (d - sum);
+            sum = d + a;
+            v = sum - d;
+            err = (d - (sum - v)) + (a - v) + dLo + aLo;
+            x = sum + err;
+            xLo = err - (x - sum);
+            t++;
+            if (abs((x - xp) + (xLo - xpLo)) < eps
+                    && abs((y - yp) + (yLo - ypLo)) < eps) {
+                return T;
+            }
+            if (t == p) {
+                xp = x;
+                xpLo = xLo;
+                yp = y;
+                ypLo = yLo;
+                p <<= 1;
+            }
+        }
+        return t;
+    }
+
 }
@@ -1,6 +1,16 @@
 package recursion;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import static recursion.AbstractRenderThread.UNKNOWN;
 
 /**
  * A fractal renderer that will render a fractal pixel by pixel.
@@ -10,10 +20,86 @@ import java.awt.image.BufferedImage;
 public abstract class AbstractRenderer {
 
     /**
-     * The number of threads to use. My computer has eight virtual cores,
-     * so I set this to eight.
+     * The number of threads to use, one for each available core.
      */
-    private static final int NUM_THREADS = 8;
+    private static final int NUM_THREADS
+            = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The worker pool shared by every renderer. It lives for as long as
+     * the application does, so that rendering does not pay for creating
+     * and tearing down threads; its workers are daemon threads.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(NUM_THREADS);
+
+    /**
+     * The tile cache shared by every renderer, which by default may take an
+     * eighth of the heap.
+     */
+    private static final TileCache CACHE
+            = new TileCache(Runtime.getRuntime().maxMemory() / 8);
+
+    /**
+     * The pixel spacing below which double cannot tell the pixels apart
+     * and they are computed in double-double instead.
+     */
+    public static final double MIN_DOUBLE_SPACING = 1e-14;
+    /**
+     * The fraction of a pixel by which the mirror image of a pixel may miss
+     * the pixel onto which it is mirrored. This only allows for rounding,
+     * since a pixel that is mirrored onto one even slightly off it may
+     * have a different escape time.
+     */
+    private static final double MIRROR_TOLERANCE = 1e-9;
+
+    /**
+     * The largest dimension of the blocks in which a render that is
+     * streamed out a band at a time is computed.
+     */
+    public static final int BAND = 512;
+
+    /**
+     * The largest difference in escape time value between two neighbouring
+     * pixels that is not taken as an edge to be supersampled. Values one
+     * apart are next to each other in any color map, so only jumps past
+     * that alias.
+     */
+    public static final int EDGE_THRESHOLD = 1;
+
+    /**
+     * The linear intensities of the sRGB channel values, in which the
+     * colors of subsamples are averaged.
+     */
+    private static final float[] LINEAR = new float[256];
+
+    static {
+        for (int c = 0; c < LINEAR.length; c++) {
+            double v = c / 255.0;
+            LINEAR[c] = (float) (v <= 0.04045 ? v / 12.92
+                    : Math.pow((v + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    /**
+     * The grid steps of the passes of a progressive render, from coarsest
+     * to finest. Each pass only computes the pixels that the coarser
+     * passes have not.
+     */
+    private static final int[] PROGRESSIVE_STEPS = {8, 4, 2, 1};
+
+    /**
+     * @return the worker pool shared by all renderers
+     */
+    public static ForkJoinPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * @return the tile cache shared by all renderers
+     */
+    public static TileCache getCache() {
+        return CACHE;
+    }
 
     /**
      * The render parameters. N is the render dimension and T is the
@@ -21,6 +107,32 @@ public abstract class AbstractRenderer {
      */
     private final int N, T;
 
+    /**
+     * Whether to skip uniform regions by subdivision.
+     */
+    private boolean subdivide;
+    /**
+     * Whether orbits are checked for periodicity.
+     */
+    private boolean periodicityCheck;
+    /**
+     * Whether tiles are computed by the vectorized kernel.
+     */
+    private boolean vectorized;
+    /**
+     * Whether the tile cache is read and filled.
+     */
+    private boolean cached;
+
+    /**
+     * Whether this renderer has been cancelled.
+     */
+    private volatile boolean cancelled;
+    /**
+     * The render thread of the pass in progress.
+     */
+    private volatile AbstractRenderThread thread;
+
     /**
      * Create a new fractal renderer.
      *
@@ -28,36 +140,666 @@ public abstract class AbstractRenderer {
      * @param T the maximum number of iterations
      */
     public AbstractRenderer(int N, int T) {
-        int b = N % NUM_THREADS;
-        // Ensure that the render dimension can be split into the correct
-        // number of threads
-        if (b != 0) {
-            N += b;
-        }
         this.N = N;
         this.T = T;
+        periodicityCheck = true;
+        cached = true;
     }
 
     /**
-     * Take a set of escape time values and map it to a buffered image
-     * using a particular coloring method.
+     * @return the render dimension
+     */
+    public int getDimension() {
+        return N;
+    }
+
+    /**
+     * @return the maximum number of iterations
+     */
+    public int getMaxIterations() {
+        return T;
+    }
+
+    /**
+     * Set whether to skip the regions inside the set by rectangle
+     * subdivision rather than computing every pixel.
      *
-     * @param img the image to which the colors will be mapped
-     * @param cm the color map to use
-     * @param values the escape time values
-     * @return a colored buffered image
+     * @param subdivide whether to subdivide
+     */
+    public void setSubdivide(boolean subdivide) {
+        this.subdivide = subdivide;
+    }
+
+    /**
+     * Set whether orbits are checked for periodicity, so that points whose
+     * orbits settle into a cycle stop early. This is on by default.
+     *
+     * @param periodicityCheck whether to check for periodicity
      */
-    private BufferedImage color(BufferedImage img, ColorMap cm,
-            int[] values) {
-        int[] rgb = new int[values.length];
-        for (int g = 0; g < values.length; g++) {
-            rgb[g] = cm.getRGB(values[g], T);
+    public void setPeriodicityCheck(boolean periodicityCheck) {
+        this.periodicityCheck = periodicityCheck;
+    }
+
+    /**
+     * Set whether tiles are computed by the vectorized kernel, which
+     * iterates several points side by side, or point by point by the
+     * scalar kernel. The vectorized kernel does not check for periodicity,
+     * so it is fastest on views where most points escape. This is off by
+     * default; fractals without a vectorized kernel always use the scalar
+     * one.
+     *
+     * @param vectorized whether to use the vectorized kernel
+     */
+    public void setVectorized(boolean vectorized) {
+        this.vectorized = vectorized;
+    }
+
+    /**
+     * Set whether pixels are taken from the tile cache and computed tiles
+     * are stored in it. This is on by default, for fractals that are
+     * cached; a renderer without it computes every pixel.
+     *
+     * @param cached whether to use the tile cache
+     */
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * Cancel the render in progress. The render stops cooperatively: the
+     * tiles being rendered finish their current column and the rest are
+     * skipped.
+     */
+    public void cancel() {
+        cancelled = true;
+        AbstractRenderThread thread = this.thread;
+        if (thread != null) {
+            thread.cancel();
         }
+    }
+
+    /**
+     * @return whether this renderer has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Create an array of escape time values in which no pixel has been
+     * computed yet.
+     *
+     * @return the escape time values
+     */
+    public int[] createValues() {
+        int[] values = new int[N * N];
+        Arrays.fill(values, UNKNOWN);
+        return values;
+    }
+
+    /**
+     * Create an array for the fractions of the escape times, with which a
+     * render is colored smoothly.
+     *
+     * @return the fractions of the escape times
+     */
+    public float[] createFractions() {
+        return new float[N * N];
+    }
+
+    /**
+     * Copy the escape time values of a view onto the pixels of a new view
+     * that lie exactly on pixels of the old one, so that only the other
+     * pixels are left to compute. The new view may be the old one panned
+     * by whole pixels, and zoomed by a factor of two: pixel r of the new
+     * view lies on pixel (a r + d) / b of the old view, whenever that is a
+     * whole number.
+     *
+     * @param from the escape time values of the old view
+     * @param to the escape time values of the new view
+     * @param a the zoom factor numerator
+     * @param b the zoom factor denominator
+     * @param dx the offset d of the new view along x
+     * @param dy the offset d of the new view along y
+     */
+    public void resample(int[] from, int[] to, int a, int b,
+            int dx, int dy) {
+        int[] rows = resample(a, b, dy);
+        for (int r = 0; r < N; r++) {
+            int m = (a * r + dx) / b;
+            if ((a * r + dx) % b != 0 || m < 0 || m >= N) {
+                continue;
+            }
+            for (int i = 0; i < N; i++) {
+                if (rows[i] >= 0) {
+                    to[r * N + i] = from[m * N + rows[i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the fractions of the escape times of a view onto the pixels of
+     * a new view that lie exactly on pixels of the old one, along with
+     * their escape time values.
+     *
+     * @param from the fractions of the old view
+     * @param to the fractions of the new view
+     * @param a the zoom factor numerator
+     * @param b the zoom factor denominator
+     * @param dx the offset d of the new view along x
+     * @param dy the offset d of the new view along y
+     */
+    public void resample(float[] from, float[] to, int a, int b,
+            int dx, int dy) {
+        int[] rows = resample(a, b, dy);
         for (int r = 0; r < N; r++) {
+            int m = (a * r + dx) / b;
+            if ((a * r + dx) % b != 0 || m < 0 || m >= N) {
+                continue;
+            }
             for (int i = 0; i < N; i++) {
-                img.setRGB(r, i, rgb[r * N + i]);
+                if (rows[i] >= 0) {
+                    to[r * N + i] = from[m * N + rows[i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the pixels of the old view on which the pixels of the new view
+     * lie along one axis.
+     *
+     * @param a the zoom factor numerator
+     * @param b the zoom factor denominator
+     * @param d the offset of the new view
+     * @return the old pixel of each new pixel, or -1 for the pixels that
+     * do not lie on one
+     */
+    private int[] resample(int a, int b, int d) {
+        int[] pixels = new int[N];
+        for (int i = 0; i < N; i++) {
+            int m = (a * i + d) / b;
+            boolean whole = (a * i + d) % b == 0 && m >= 0 && m < N;
+            pixels[i] = whole ? m : -1;
+        }
+        return pixels;
+    }
+
+    /**
+     * Compute the escape time values of the pixels on a grid of the given
+     * step. Pixels that already have a value are kept, and so are those
+     * that are in the tile cache. Once every pixel has been computed, the
+     * tiles of the view are cached.
+     * <p>
+     * When the fractal is symmetric and the view overlaps its own mirror
+     * image, only the half of the view below the axis of symmetry is
+     * computed at first and mirrored onto the half above; the pixels that
+     * are left, those whose mirror images fall outside of the view or off
+     * the grid, are computed afterwards.
+     *
+     * @param values the escape time values
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param step the grid step
+     */
+    public void compute(int[] values, BigDecimal xc, BigDecimal yc,
+            double s, int step) {
+        compute(values, null, xc, yc, s, step);
+    }
+
+    /**
+     * Compute the escape time values of the pixels on a grid of the given
+     * step, along with the fractions of their escape times, so that they
+     * can be colored smoothly. The tile cache holds no fractions, so it is
+     * neither read nor filled when they are computed. Subdivided renders
+     * read it but do not fill it, since the regions that subdivision fills
+     * from their borders may be wrong, and renders without subdivision
+     * take cached pixels as exact.
+     *
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null not to
+     * compute them
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param step the grid step
+     */
+    public void compute(int[] values, float[] fractions, BigDecimal xc,
+            BigDecimal yc, double s, int step) {
+        String fractal = fractions == null && cached ? getFractal() : null;
+        if (fractal != null) {
+            CACHE.load(values, N, fractal, T, xc, yc, s);
+        }
+        compute(N, values, fractions, xc, yc, s, step);
+        if (fractal != null && step == 1 && !subdivide && !cancelled) {
+            CACHE.store(values, N, fractal, T, xc, yc, s);
+        }
+    }
+
+    /**
+     * Compute the escape time values of the pixels of a view of any
+     * dimension on a grid of the given step, making use of symmetry.
+     *
+     * @param N the render dimension
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param step the grid step
+     */
+    private void compute(int N, int[] values, float[] fractions,
+            BigDecimal xc, BigDecimal yc, double s, int step) {
+        AbstractRenderThread thread = getRenderThread(N, T, values,
+                xc, yc, s);
+        thread.setFractions(fractions);
+        thread.setPeriodicityCheck(periodicityCheck);
+        thread.setVectorized(vectorized);
+        this.thread = thread;
+        if (cancelled) {
+            return;
+        }
+        int Mx = getMirror(N, xc, s);
+        int My = getMirror(N, yc, s);
+        boolean conjugate = isConjugateSymmetric();
+        if (My >= 0 && (conjugate || isPointSymmetric() && Mx >= 0)) {
+            POOL.invoke(new RenderTask(thread, 0, N, 0, My / 2 + 1, step,
+                    subdivide));
+            mirror(N, values, fractions, conjugate ? -1 : Mx, My);
+        }
+        // Split the image into tiles and let the pool balance them
+        POOL.invoke(new RenderTask(thread, 0, N, 0, N, step, subdivide));
+    }
+
+    /**
+     * Find the pixels that are mirror images of each other across the
+     * origin along one axis. Pixel p along the axis mirrors pixel M - p,
+     * for a view whose center is c; the mirror images of the pixels land
+     * on other pixels only if the center is a whole number of half pixels
+     * from the origin.
+     *
+     * @param N the render dimension
+     * @param c the center along the axis
+     * @param s the zoom scale
+     * @return the sum M of the pixels that mirror each other, or -1 if the
+     * view does not overlap its mirror image pixel for pixel
+     */
+    private static int getMirror(int N, BigDecimal c, double s) {
+        double M = N - 2 * c.doubleValue() * N / s;
+        long m = Math.round(M);
+        if (Math.abs(M - m) > MIRROR_TOLERANCE || m < 2 || m > 2 * N - 2) {
+            return -1;
+        }
+        return (int) m;
+    }
+
+    /**
+     * Mirror the computed pixels of the lower half of a view onto the
+     * pixels of the upper half that have not been computed.
+     *
+     * @param N the render dimension
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null
+     * @param Mx the sum of the columns that mirror each other, or -1 to
+     * mirror the pixels in their own column, across the real axis
+     * @param My the sum of the rows that mirror each other
+     */
+    private static void mirror(int N, int[] values, float[] fractions,
+            int Mx, int My) {
+        int last = Math.min(My, N - 1);
+        for (int r = 0; r < N; r++) {
+            int m = Mx < 0 ? r : Mx - r;
+            if (m < 0 || m >= N) {
+                continue;
+            }
+            for (int i = My / 2 + 1; i <= last; i++) {
+                int value = values[m * N + My - i];
+                if (values[r * N + i] == UNKNOWN && value != UNKNOWN) {
+                    values[r * N + i] = value;
+                    if (fractions != null) {
+                        fractions[r * N + i] = fractions[m * N + My - i];
+                    }
+                }
             }
         }
+    }
+
+    /**
+     * @return the number of rows in each band of a render that is streamed
+     * out a band at a time
+     */
+    public int getBand() {
+        return getBlock(BAND);
+    }
+
+    /**
+     * Render and color a band of rows of a fractal, for a render that is
+     * streamed out a band at a time instead of being held whole.
+     *
+     * @param cm the color map to use
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param y the first row of the band, a multiple of the band height
+     * @return the RGB values of the band, row by row; the last band may
+     * have fewer rows
+     */
+    public int[] renderBand(ColorMap cm, BigDecimal xc, BigDecimal yc,
+            double s, int y) {
+        return colorBand(cm, computeBand(xc, yc, s, y));
+    }
+
+    /**
+     * Compute the escape time values of a band of rows of a fractal. The
+     * band is computed a block at a time, and the pixels that are in the
+     * tile cache are taken from it.
+     *
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param y the first row of the band, a multiple of the band height
+     * @return the escape time values of the band, row by row; the last
+     * band may have fewer rows
+     */
+    public int[] computeBand(BigDecimal xc, BigDecimal yc, double s, int y) {
+        return computeBand(xc, yc, s, y, null);
+    }
+
+    /**
+     * Compute the escape time values of a band of rows of a fractal, along
+     * with the fractions of their escape times.
+     *
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param y the first row of the band, a multiple of the band height
+     * @param fractions the array to which the fractions of the band will
+     * be stored row by row, as long as the band, or null not to compute
+     * them
+     * @return the escape time values of the band, row by row; the last
+     * band may have fewer rows
+     */
+    public int[] computeBand(BigDecimal xc, BigDecimal yc, double s, int y,
+            float[] fractions) {
+        int B = getBand();
+        int H = Math.min(B, N - y);
+        int[] band = new int[H * N];
+        int[] block = new int[B * B];
+        float[] blockFractions = fractions == null ? null : new float[B * B];
+        for (int x = 0; x < N; x += B) {
+            if (cancelled) {
+                break;
+            }
+            computeBlock(block, blockFractions, B, x, y, xc, yc, s);
+            int W = Math.min(B, N - x);
+            for (int r = 0; r < W; r++) {
+                for (int i = 0; i < H; i++) {
+                    band[i * N + x + r] = block[r * B + i];
+                }
+            }
+            if (fractions != null) {
+                for (int r = 0; r < W; r++) {
+                    for (int i = 0; i < H; i++) {
+                        fractions[i * N + x + r]
+                                = blockFractions[r * B + i];
+                    }
+                }
+            }
+        }
+        return band;
+    }
+
+    /**
+     * Color the escape time values of a band of rows.
+     *
+     * @param cm the color map to use
+     * @param band the escape time values of the band
+     * @return the RGB values of the band
+     */
+    public int[] colorBand(ColorMap cm, int[] band) {
+        return colorBand(cm, band, null);
+    }
+
+    /**
+     * Color the escape time values of a band of rows, smoothly if the
+     * fractions of their escape times are given.
+     *
+     * @param cm the color map to use
+     * @param band the escape time values of the band
+     * @param fractions the fractions of the escape times of the band, or
+     * null
+     * @return the RGB values of the band
+     */
+    public int[] colorBand(ColorMap cm, int[] band, float[] fractions) {
+        int[] table = cm.getTable(T);
+        int[] rgb = new int[band.length];
+        for (int k = 0; k < band.length; k++) {
+            rgb[k] = fractions == null ? table[band[k]]
+                    : ColorMap.interpolate(table, band[k], fractions[k]);
+        }
+        return rgb;
+    }
+
+    /**
+     * Color the escape time values of a band of rows with adaptive
+     * supersampling. The band is colored one sample per pixel, and then
+     * every pixel whose value differs from that of a neighbour by more than
+     * the edge threshold is computed again at k by k jittered
+     * subsamples, one in each cell of a k by k grid over the pixel, whose
+     * colors are averaged in linear intensity. Only the edges, where fine
+     * filaments alias, cost the extra orbits. The jitter is seeded by row,
+     * so that a render is supersampled the same way every time. The bands
+     * above and below are given too, so that edges are found across the
+     * borders between bands.
+     *
+     * @param cm the color map to use
+     * @param band the escape time values of the band
+     * @param fractions the fractions of the escape times of the band, or
+     * null
+     * @param before the escape time values of the band above, or null if
+     * the band is the first
+     * @param after the escape time values of the band below, or null if the
+     * band is the last
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param y the first row of the band
+     * @param k the number of subsamples along each side of a pixel
+     * @return the RGB values of the band
+     */
+    public int[] supersample(ColorMap cm, int[] band, float[] fractions,
+            int[] before, int[] after, BigDecimal xc, BigDecimal yc,
+            double s, int y, int k) {
+        int[] rgb = colorBand(cm, band, fractions);
+        int[] table = cm.getTable(T);
+        AbstractRenderThread thread = getRenderThread(N, T, null, xc, yc, s);
+        thread.setPeriodicityCheck(periodicityCheck);
+        List<ForkJoinTask<?>> rows = new ArrayList<>();
+        for (int i = 0; i < band.length / N; i++) {
+            int row = i;
+            rows.add(POOL.submit(() -> supersample(thread, rgb, table, band,
+                    fractions, before, after, y, row, k)));
+        }
+        for (ForkJoinTask<?> row : rows) {
+            row.join();
+        }
+        return rgb;
+    }
+
+    /**
+     * Supersample the edge pixels of a row of a band.
+     *
+     * @param thread the render thread of the whole view
+     * @param rgb the RGB values of the band
+     * @param table the RGB values of the escape time values
+     * @param band the escape time values of the band
+     * @param fractions the fractions of the escape times, or null
+     * @param before the escape time values of the band above, or null
+     * @param after the escape time values of the band below, or null
+     * @param y the first row of the band
+     * @param i the row in the band
+     * @param k the number of subsamples along each side of a pixel
+     */
+    private void supersample(AbstractRenderThread thread, int[] rgb,
+            int[] table, int[] band, float[] fractions, int[] before,
+            int[] after, int y, int i, int k) {
+        int H = band.length / N;
+        // The neighbouring rows, which for the first and last rows of the
+        // band are in the bands on either side, or null at the render edges
+        int[] above = i > 0 ? band : before;
+        int u = i > 0 ? (i - 1) * N : before == null ? 0 : before.length - N;
+        int[] below = i < H - 1 ? band : after;
+        int d = i < H - 1 ? (i + 1) * N : 0;
+        SplittableRandom random = new SplittableRandom(y + i);
+        float[] f = fractions == null ? null : new float[1];
+        for (int x = 0; x < N; x++) {
+            if (cancelled) {
+                return;
+            }
+            int p = i * N + x;
+            if (!(x > 0 && isEdge(band[p], band[p - 1])
+                    || x < N - 1 && isEdge(band[p], band[p + 1])
+                    || above != null && isEdge(band[p], above[u + x])
+                    || below != null && isEdge(band[p], below[d + x]))) {
+                continue;
+            }
+            float R = 0;
+            float G = 0;
+            float B = 0;
+            for (int a = 0; a < k; a++) {
+                for (int b = 0; b < k; b++) {
+                    // A pixel covers half a pixel on either side of it
+                    double r = x - 0.5 + (a + random.nextDouble()) / k;
+                    double j = y + i - 0.5 + (b + random.nextDouble()) / k;
+                    int w = thread.sample(r, j, f, 0);
+                    int c = f == null ? table[w]
+                            : ColorMap.interpolate(table, w, f[0]);
+                    R += LINEAR[c >> 16 & 0xff];
+                    G += LINEAR[c >> 8 & 0xff];
+                    B += LINEAR[c & 0xff];
+                }
+            }
+            int n = k * k;
+            rgb[p] = 0xff000000 | toSRGB(R / n) << 16 | toSRGB(G / n) << 8
+                    | toSRGB(B / n);
+        }
+    }
+
+    /**
+     * Check whether two neighbouring pixels differ in escape time value by
+     * more than the edge threshold.
+     *
+     * @param v the value of the pixel
+     * @param w the value of its neighbour
+     * @return whether there is an edge between the pixels
+     */
+    private static boolean isEdge(int v, int w) {
+        return Math.abs(v - w) > EDGE_THRESHOLD;
+    }
+
+    /**
+     * Convert a linear intensity back to an sRGB channel value.
+     *
+     * @param v the linear intensity, from zero to one
+     * @return the channel value
+     */
+    private static int toSRGB(float v) {
+        double c = v <= 0.0031308 ? v * 12.92
+                : 1.055 * Math.pow(v, 1 / 2.4) - 0.055;
+        return (int) Math.max(0, Math.min(255, Math.round(c * 255)));
+    }
+
+    /**
+     * Find the dimension of the blocks in which a render is computed. The
+     * blocks are evened out, so that those at the edges are not mostly
+     * outside of the render.
+     *
+     * @param max the largest block dimension
+     * @return the block dimension
+     */
+    private int getBlock(int max) {
+        int blocks = (N + max - 1) / max;
+        return (N + blocks - 1) / blocks;
+    }
+
+    /**
+     * Compute the escape time values of a block of a render, as an
+     * ordinary render of the part of the view that the block covers.
+     * Pixels in the tile cache are taken from it, unless the fractions of
+     * the escape times are computed.
+     *
+     * @param block the escape time values of the block
+     * @param fractions the fractions of the escape times of the block, or
+     * null not to compute them
+     * @param B the block dimension
+     * @param x the x of the first pixel of the block
+     * @param y the y of the first pixel of the block
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     */
+    private void computeBlock(int[] block, float[] fractions, int B,
+            int x, int y, BigDecimal xc, BigDecimal yc, double s) {
+        // The center of the block, offset from that of the view
+        BigDecimal xb = xc.add(BigDecimal.valueOf(
+                s * (x + B / 2.0 - N / 2.0) / N));
+        BigDecimal yb = yc.add(BigDecimal.valueOf(
+                s * (y + B / 2.0 - N / 2.0) / N));
+        double sb = s * B / N;
+        Arrays.fill(block, UNKNOWN);
+        if (fractions != null) {
+            Arrays.fill(fractions, 0);
+        }
+        String fractal = fractions == null && cached ? getFractal() : null;
+        if (fractal != null) {
+            CACHE.load(block, B, fractal, T, xb, yb, sb);
+        }
+        compute(B, block, fractions, xb, yb, sb, 1);
+    }
+
+    /**
+     * Take a set of escape time values and map it to a buffered image
+     * using a particular coloring method. Pixels that have not been
+     * computed take the color of the grid pixel above and to the left of
+     * them, so that a coarse render is shown upscaled.
+     * <p>
+     * The values are colored in parallel, a tile at a time, straight into
+     * the pixels of the image.
+     *
+     * @param img the image to which the colors will be mapped, whose pixels
+     * are stored as ints, as those of a TYPE_INT_RGB image are
+     * @param cm the color map to use
+     * @param values the escape time values
+     * @param step the grid step to which the values have been computed
+     * @return a colored buffered image
+     */
+    public BufferedImage color(BufferedImage img, ColorMap cm,
+            int[] values, int step) {
+        return color(img, cm, values, null, step);
+    }
+
+    /**
+     * Take a set of escape time values and map it to a buffered image,
+     * smoothly if the fractions of the escape times are given. The color
+     * map is first fitted to the values.
+     *
+     * @param img the image to which the colors will be mapped, whose pixels
+     * are stored as ints, as those of a TYPE_INT_RGB image are
+     * @param cm the color map to use
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null
+     * @param step the grid step to which the values have been computed
+     * @return a colored buffered image
+     */
+    public BufferedImage color(BufferedImage img, ColorMap cm,
+            int[] values, float[] fractions, int step) {
+        int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer())
+                .getData();
+        int[] table = cm.fit(values, T).getTable(T);
+        POOL.invoke(new ColorTask(pixels, values, fractions, table,
+                N, 0, N, 0, N, step));
         return img;
     }
 
@@ -71,36 +813,151 @@ public abstract class AbstractRenderer {
      * @param s the zoom scale
      */
     public void render(BufferedImage img, ColorMap cm,
-            double xc, double yc, double s) {
-        // Create the render threads
-        AbstractRenderThread[] threads
-                = new AbstractRenderThread[NUM_THREADS];
-        int[] values = new int[N * N]; // escape time values
-        int b = N / NUM_THREADS; // strip width
-        int Wi = 0, Wf = b;
-        try {
-            for (int t = 0; t < NUM_THREADS; t++) {
-                threads[t] = getRenderThread(Wi, Wf, N, T, values,
-                        xc, yc, s);
-                threads[t].start();
-                threads[t].join();
-                Wi += b;
-                Wf += b;
+            BigDecimal xc, BigDecimal yc, double s) {
+        int[] values = createValues();
+        compute(values, xc, yc, s, 1);
+        // Color the image with the values
+        color(img, cm, values, 1);
+    }
+
+    /**
+     * Render a fractal progressively, coarse to fine. The image is colored
+     * after each pass, starting at one eighth of the resolution, and each
+     * pass reuses the pixels computed by the coarser ones. A cancelled
+     * render stops without coloring the pass it was on.
+     *
+     * @param img the image to which to render
+     * @param cm the color map to use
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param pass what to do once a pass has been colored
+     */
+    public void render(BufferedImage img, ColorMap cm,
+            BigDecimal xc, BigDecimal yc, double s, Runnable pass) {
+        render(img, cm, createValues(), null, xc, yc, s, pass);
+    }
+
+    /**
+     * Render a fractal progressively, coarse to fine, into escape time
+     * values of which some may already be known. Only the pixels that
+     * have no value yet are computed. The render is colored smoothly if
+     * the fractions of the escape times are computed as well.
+     *
+     * @param img the image to which to render
+     * @param cm the color map to use
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null not to
+     * compute them
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param pass what to do once a pass has been colored
+     */
+    public void render(BufferedImage img, ColorMap cm, int[] values,
+            float[] fractions, BigDecimal xc, BigDecimal yc, double s,
+            Runnable pass) {
+        for (int step : PROGRESSIVE_STEPS) {
+            compute(values, fractions, xc, yc, s, step);
+            if (cancelled) {
+                return;
             }
-        } catch (InterruptedException ex) {
-            // If something happens to interrupt the rendering,
-            // simply color what we have and perhaps deal with the 
-            // black banding that will occur
+            color(img, cm, values, fractions, step);
+            pass.run();
         }
-        // Color the image with the values
-        color(img, cm, values);
+    }
+
+    /**
+     * Render a fractal progressively in the background. Cancelling the
+     * returned future cancels the render.
+     *
+     * @param img the image to which to render
+     * @param cm the color map to use
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param pass what to do once a pass has been colored
+     * @return the completed image
+     */
+    public CompletableFuture<BufferedImage> renderAsync(BufferedImage img,
+            ColorMap cm, BigDecimal xc, BigDecimal yc, double s,
+            Runnable pass) {
+        return renderAsync(img, cm, createValues(), null, xc, yc, s, pass);
+    }
+
+    /**
+     * Render a fractal progressively in the background, into escape time
+     * values of which some may already be known. Cancelling the returned
+     * future cancels the render.
+     *
+     * @param img the image to which to render
+     * @param cm the color map to use
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null not to
+     * compute them
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param pass what to do once a pass has been colored
+     * @return the completed image
+     */
+    public CompletableFuture<BufferedImage> renderAsync(BufferedImage img,
+            ColorMap cm, int[] values, float[] fractions, BigDecimal xc,
+            BigDecimal yc, double s, Runnable pass) {
+        CompletableFuture<BufferedImage> frame = new CompletableFuture<>();
+        frame.whenComplete((done, ex) -> {
+            if (frame.isCancelled()) {
+                cancel();
+            }
+        });
+        POOL.execute(() -> {
+            try {
+                render(img, cm, values, fractions, xc, yc, s, pass);
+                if (cancelled) {
+                    frame.cancel(false);
+                } else {
+                    frame.complete(img);
+                }
+            } catch (RuntimeException ex) {
+                frame.completeExceptionally(ex);
+            }
+        });
+        return frame;
+    }
+
+    /**
+     * Get the name of the fractal, by which its tiles are cached. Renderers
+     * that compute the same fractal have the same name.
+     *
+     * @return the name of the fractal, or null not to cache its tiles
+     */
+    public String getFractal() {
+        return null;
+    }
+
+    /**
+     * Check whether the fractal is symmetric across the real axis, so that
+     * a point and its complex conjugate have the same escape time.
+     *
+     * @return whether the fractal is conjugate symmetric
+     */
+    protected boolean isConjugateSymmetric() {
+        return false;
+    }
+
+    /**
+     * Check whether the fractal is symmetric about the origin, so that the
+     * points z and -z have the same escape time.
+     *
+     * @return whether the fractal is point symmetric
+     */
+    protected boolean isPointSymmetric() {
+        return false;
     }
 
     /**
      * Get the render thread specific to the fractal that will be rendered.
      *
-     * @param Wi the start x
-     * @param Wf the finish x
      * @param N the render dimension
      * @param T the maximum iterations
      * @param values the array of escape time values
@@ -109,7 +966,7 @@ public abstract class AbstractRenderer {
      * @param s the zoom scale
      * @return a render thread
      */
-    public abstract AbstractRenderThread getRenderThread(int Wi, int Wf,
-            int N, int T, int[] values, double xc, double yc, double s);
+    public abstract AbstractRenderThread getRenderThread(int N, int T,
+            int[] values, BigDecimal xc, BigDecimal yc, double s);
 
 }
@@ -3,13 +3,15 @@ package recursion;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import static java.lang.Math.pow;
-import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -38,6 +40,15 @@ public abstract class AbstractSimulator extends JPanel {
      * The default color map sample rate.
      */
     private static final int DEFAULT_SAMPLE_RATE = 256;
+    /**
+     * The dimension of the preview to which saved images fit color maps.
+     */
+    private static final int PREVIEW = 256;
+    /**
+     * The number of subsamples along each side of the edge pixels of an
+     * anti-aliased image.
+     */
+    private static final int SUPERSAMPLES = 4;
 
     /**
      * The fractal display.
@@ -60,6 +71,23 @@ public abstract class AbstractSimulator extends JPanel {
      * maximum iterations.
      */
     private JTextField rateField;
+    /**
+     * Whether to skip the regions inside the set by rectangle subdivision.
+     */
+    private JCheckBox subdivideBox;
+    /**
+     * Whether to compute the fractal by the vectorized kernel.
+     */
+    private JCheckBox vectorizeBox;
+    /**
+     * Whether to color the fractal smoothly, by fractional escape times.
+     */
+    private JCheckBox smoothBox;
+    /**
+     * Whether to spread the escape times evenly over the color map by
+     * their histogram, in place of a sample rate.
+     */
+    private JCheckBox equalizeBox;
 
     /**
      * The text field for the image capture render dimension.
@@ -73,6 +101,15 @@ public abstract class AbstractSimulator extends JPanel {
      * The file name for the saved image.
      */
     private JTextField saveNameField;
+    /**
+     * Whether to save the escape time values of the image in an archive
+     * alongside it, so that it can be colored again later.
+     */
+    private JCheckBox archiveBox;
+    /**
+     * Whether to anti-alias the image by supersampling its edge pixels.
+     */
+    private JCheckBox antialiasBox;
     /**
      * A text area where information may be displayed.
      */
@@ -138,7 +175,7 @@ public abstract class AbstractSimulator extends JPanel {
         Font bFont = new Font("Serif", Font.PLAIN, 16);
         JButton renderButton = new JButton("Render");
         renderButton.setFont(bFont);
-        renderButton.setBounds(110, 400, 100, 30);
+        renderButton.setBounds(110, 495, 100, 30);
         renderButton.addActionListener(this::changeParameters);
         add(renderButton);
 
@@ -147,7 +184,7 @@ public abstract class AbstractSimulator extends JPanel {
         resetButton.setFont(bFont);
         resetButton.setBounds(275, 140, 100, 30);
         resetButton.addActionListener((ActionEvent ae) -> {
-            display.changeParameters(0, 0,
+            display.changeParameters(BigDecimal.ZERO, BigDecimal.ZERO,
                     START_ZOOM, START_T);
         });
         add(resetButton);
@@ -185,6 +222,43 @@ public abstract class AbstractSimulator extends JPanel {
         rateField.setText(String.format("%d", DEFAULT_SAMPLE_RATE));
         add(rateField);
 
+        // Whether to render by subdivision
+        subdivideBox = new JCheckBox("Subdivide");
+        subdivideBox.setBounds(85, 365, 85, 30);
+        subdivideBox.addActionListener((ActionEvent ae) -> {
+            display.setSubdivide(subdivideBox.isSelected());
+        });
+        add(subdivideBox);
+
+        // Whether to render by the vectorized kernel
+        vectorizeBox = new JCheckBox("Vectorize");
+        vectorizeBox.setBounds(170, 365, 85, 30);
+        vectorizeBox.addActionListener((ActionEvent ae) -> {
+            display.setVectorized(vectorizeBox.isSelected());
+        });
+        add(vectorizeBox);
+
+        // Whether to color smoothly
+        smoothBox = new JCheckBox("Smooth Coloring");
+        smoothBox.setBounds(85, 395, 170, 30);
+        smoothBox.addActionListener((ActionEvent ae) -> {
+            display.setSmooth(smoothBox.isSelected());
+        });
+        add(smoothBox);
+
+        // Whether to equalize the color map
+        equalizeBox = new JCheckBox("Equalize Colors");
+        equalizeBox.setBounds(85, 425, 170, 30);
+        equalizeBox.addActionListener((ActionEvent ae) -> {
+            display.setColorMap(getSelectedColorMap());
+        });
+        add(equalizeBox);
+
+        // Anti-alias saved images
+        antialiasBox = new JCheckBox("Anti-alias");
+        antialiasBox.setBounds(85, 455, 170, 30);
+        add(antialiasBox);
+
         // Get the display and set it to the simulation
         display = getDisplay(this, N);
         display.setBounds((dim.width - N) / 2, (dim.height - N) / 2, N, N);
@@ -233,6 +307,9 @@ public abstract class AbstractSimulator extends JPanel {
         save.setBounds(1235, 200, 110, 30);
         save.addActionListener(this::saveImage);
         add(save);
+        archiveBox = new JCheckBox("Save Escape Times");
+        archiveBox.setBounds(1235, 235, 170, 30);
+        add(archiveBox);
 
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(dim);
@@ -267,10 +344,11 @@ public abstract class AbstractSimulator extends JPanel {
      * @param s the zoom scale
      * @param T the maximum number of iterations
      */
-    public void updateParameters(double xc, double yc, double s, int T) {
-        xField.setText(String.format("%.20f", xc));
-        yField.setText(String.format("%.20f", yc));
-        sField.setText(String.format("%.20f", s));
+    public void updateParameters(BigDecimal xc, BigDecimal yc, double s,
+            int T) {
+        xField.setText(xc.toPlainString());
+        yField.setText(yc.toPlainString());
+        sField.setText(Double.toString(s));
         tField.setText(String.format("%d", T));
     }
 
@@ -289,10 +367,10 @@ public abstract class AbstractSimulator extends JPanel {
      * @return the center x
      * @throws NumberFormatException when it is not a number
      */
-    public double getCenterX() throws NumberFormatException {
-        double x;
+    public BigDecimal getCenterX() throws NumberFormatException {
+        BigDecimal x;
         try {
-            x = Double.parseDouble(xField.getText());
+            x = new BigDecimal(xField.getText().trim());
         } catch (NumberFormatException ex) {
             outputArea.setText("Invalid center coordinates.");
             throw ex;
@@ -306,10 +384,10 @@ public abstract class AbstractSimulator extends JPanel {
      * @return the center y
      * @throws NumberFormatException when it is not a number
      */
-    public double getCenterY() throws NumberFormatException {
-        double y;
+    public BigDecimal getCenterY() throws NumberFormatException {
+        BigDecimal y;
         try {
-            y = Double.parseDouble(yField.getText());
+            y = new BigDecimal(yField.getText().trim());
         } catch (NumberFormatException ex) {
             outputArea.setText("Invalid center coordinates.");
             throw ex;
@@ -379,13 +457,35 @@ public abstract class AbstractSimulator extends JPanel {
         int rate = getColorSampleRate();
         int index = colorMaps.getSelectedIndex();
         ColorMap cm = colorMaps.getItemAt(index);
-        if (rate > 0 && cm instanceof Spectrum) {
+        if (equalizeBox.isSelected() && cm instanceof Spectrum) {
+            // Spread the escape times over the whole spectrum
+            cm = new EqualizedSpectrum((Spectrum) cm);
+        } else if (rate > 0 && cm instanceof Spectrum) {
             // Create the palette at the sample rate
-            cm = new Palette((Spectrum) cm, rate);
+            cm = Palette.getPalette((Spectrum) cm, rate);
         }
         return cm;
     }
 
+    /**
+     * Compute the escape time values of a small preview of a render, to
+     * which color maps that depend on the whole render may be fitted.
+     *
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param T the maximum iterations
+     * @return the escape time values of the preview
+     */
+    private int[] preview(BigDecimal xc, BigDecimal yc, double s, int T) {
+        AbstractRenderer renderer = display.getRenderer(PREVIEW, T, s);
+        renderer.setSubdivide(subdivideBox.isSelected());
+        renderer.setVectorized(vectorizeBox.isSelected());
+        int[] values = renderer.createValues();
+        renderer.compute(values, xc, yc, s, 1);
+        return values;
+    }
+
     /**
      * Upon hitting render, the render parameters are changed.
      *
@@ -393,8 +493,8 @@ public abstract class AbstractSimulator extends JPanel {
      */
     private void changeParameters(ActionEvent ae) {
         try {
-            double xc = getCenterX();
-            double yc = getCenterY();
+            BigDecimal xc = getCenterX();
+            BigDecimal yc = getCenterY();
             double s = getScaleFactor();
             int T = getMaxIterations();
             ColorMap cm = getSelectedColorMap();
@@ -420,8 +520,8 @@ public abstract class AbstractSimulator extends JPanel {
      */
     private void saveImage(ActionEvent ae) {
         // Get the fractal parameters
-        double xc;
-        double yc;
+        BigDecimal xc;
+        BigDecimal yc;
         double s;
         ColorMap cm;
         try {
@@ -467,30 +567,89 @@ public abstract class AbstractSimulator extends JPanel {
             return;
         }
         
-        // Create the image
-        BufferedImage img = new BufferedImage(saveN, saveN,
-                BufferedImage.TYPE_INT_RGB);
-        
         // Get the renderer at the save parameters
-        AbstractRenderer renderer = display.getRenderer(saveN, saveT);
+        AbstractRenderer renderer = display.getRenderer(saveN, saveT, s);
+        renderer.setSubdivide(subdivideBox.isSelected());
+        renderer.setVectorized(vectorizeBox.isSelected());
         long t = System.nanoTime();
+        // The image is colored a band at a time, so an equalized color map
+        // is fitted to a small preview of the whole render
+        if (cm instanceof EqualizedSpectrum) {
+            cm = cm.fit(preview(xc, yc, s, saveT), saveT);
+        }
         
         // Display some rendering information
         outputArea.setText("Rendering...\n");
         repaint();
-        renderer.render(img, cm, xc, yc, s);
-        double dt = (System.nanoTime() - t) / pow(10, 9);
-        outputArea.append("Rendering complete t = "
-                + String.format("%.3f%n%n", dt));
-        outputArea.append("Saving image...\n");
-        repaint();
-        // Save the image
-        try {
-            ImageIO.write(img, "PNG", f);
+        // Render the image a band of rows at a time and write each band
+        // out once the band below it is done, so that the image is never
+        // held whole but edges across the borders of bands are found
+        File a = new File(saveNameField.getText().trim() + ".esc");
+        try (PngWriter png = new PngWriter(new BufferedOutputStream(
+                new FileOutputStream(f)), saveN, saveN);
+                EscapeArchiveWriter archive = archiveBox.isSelected()
+                        ? new EscapeArchiveWriter(a, saveN, saveT,
+                                renderer.getFractal(), xc, yc, s)
+                        : null) {
+            int B = renderer.getBand();
+            int[] before = null;
+            int[] band = null;
+            float[] fractions = null;
+            for (int y = 0; y < saveN; y += B) {
+                int H = Math.min(B, saveN - y);
+                float[] nextFractions = smoothBox.isSelected()
+                        ? new float[H * saveN] : null;
+                int[] next = renderer.computeBand(xc, yc, s, y,
+                        nextFractions);
+                if (archive != null) {
+                    archive.write(next);
+                }
+                if (band != null) {
+                    writeBand(png, renderer, cm, before, band, fractions, next,
+                            xc, yc, s, y - B);
+                }
+                before = band;
+                band = next;
+                fractions = nextFractions;
+            }
+            writeBand(png, renderer, cm, before, band, fractions, null,
+                    xc, yc, s, saveN - band.length / saveN);
         } catch (IOException ex) {
             outputArea.append("Save failed.");
+            return;
         }
+        double dt = (System.nanoTime() - t) / pow(10, 9);
+        outputArea.append("Rendering complete t = "
+                + String.format("%.3f%n%n", dt));
         outputArea.append("Image saved!");
     }
 
+    /**
+     * Color a band of rows of a saved image and write it out, anti-aliased
+     * if that is selected.
+     *
+     * @param png the image writer
+     * @param renderer the renderer of the image
+     * @param cm the color map to use
+     * @param before the escape time values of the band above, or null
+     * @param band the escape time values of the band
+     * @param fractions the fractions of the escape times of the band, or
+     * null
+     * @param after the escape time values of the band below, or null
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param y the first row of the band
+     * @throws IOException if the band cannot be written
+     */
+    private void writeBand(PngWriter png, AbstractRenderer renderer,
+            ColorMap cm, int[] before, int[] band, float[] fractions,
+            int[] after, BigDecimal xc, BigDecimal yc, double s, int y)
+            throws IOException {
+        png.write(antialiasBox.isSelected()
+                ? renderer.supersample(cm, band, fractions, before, after,
+                        xc, yc, s, y, SUPERSAMPLES)
+                : renderer.colorBand(cm, band, fractions));
+    }
+
 }
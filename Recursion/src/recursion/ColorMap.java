@@ -17,4 +17,64 @@ public interface ColorMap {
      */
     public int getRGB(int t, int T);
 
+    /**
+     * Get the RGB values of every escape time value up to the maximum, so
+     * that coloring takes a single array load per pixel.
+     *
+     * @param T the maximum escape time
+     * @return the RGB values, indexed by escape time
+     */
+    public default int[] getTable(int T) {
+        int[] table = new int[T + 1];
+        for (int t = 0; t <= T; t++) {
+            table[t] = getRGB(t, T);
+        }
+        return table;
+    }
+
+    /**
+     * Fit the color map to the escape time values of a render before they
+     * are colored. Most color maps color every render the same way and
+     * are returned as they are.
+     *
+     * @param values the escape time values
+     * @param T the maximum escape time
+     * @return the color map to color the values with
+     */
+    public default ColorMap fit(int[] values, int T) {
+        return this;
+    }
+
+    /**
+     * Get the RGB value of an escape time value that has a fraction, by
+     * blending the colors of the two whole values on either side of it in
+     * a table. An orbit that escaped a fraction of an iteration later than
+     * its escape time has a value that much lower.
+     *
+     * @param table the RGB values of the escape time values
+     * @param t the escape time value
+     * @param f the fraction of the escape time
+     * @return the RGB value
+     */
+    public static int interpolate(int[] table, int t, float f) {
+        if (t <= 0 || f == 0) {
+            return table[t];
+        }
+        float v = Math.min(Math.max(t - f, 0), table.length - 1);
+        int k = (int) v;
+        if (k == table.length - 1) {
+            return table[k];
+        }
+        int c1 = table[k];
+        int c2 = table[k + 1];
+        // Blend each channel in fixed point, with a weight out of 256
+        int w = (int) ((v - k) * 256);
+        int R = (c1 >> 16 & 0xff) + (((c2 >> 16 & 0xff) - (c1 >> 16 & 0xff))
+                * w >> 8);
+        int G = (c1 >> 8 & 0xff) + (((c2 >> 8 & 0xff) - (c1 >> 8 & 0xff))
+                * w >> 8);
+        int B = (c1 & 0xff) + (((c2 & 0xff) - (c1 & 0xff)) * w >> 8);
+        return 0xff000000 | R << 16 | G << 8 | B;
+    }
+
 }
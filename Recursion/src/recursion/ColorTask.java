@@ -0,0 +1,115 @@
+package recursion;
+
+import java.util.concurrent.RecursiveAction;
+import static recursion.AbstractRenderThread.UNKNOWN;
+
+/**
+ * A color task colors a rectangular region of a render straight into the
+ * pixels of an image. Regions larger than a tile are split in half and
+ * forked, as render tasks are, so that the pass over a render is shared
+ * by every worker and each tile is colored while its escape time values
+ * are in the cache of the worker.
+ *
+ * @author Jeff Niu
+ */
+@SuppressWarnings("serial")
+public class ColorTask extends RecursiveAction {
+
+    /**
+     * The pixels of the image, row by row.
+     */
+    private final int[] pixels;
+
+    /**
+     * The escape time values.
+     */
+    private final int[] values;
+
+    /**
+     * The fractions of the escape times, or null to color by whole escape
+     * times.
+     */
+    private final float[] fractions;
+
+    /**
+     * The RGB values of the escape time values.
+     */
+    private final int[] table;
+
+    /**
+     * The render dimension.
+     */
+    private final int N;
+
+    /**
+     * The region of pixels to color and the step of the pixel grid.
+     */
+    private final int Wi, Wf, Hi, Hf, step;
+
+    /**
+     * Create a new color task.
+     *
+     * @param pixels the pixels of the image, row by row
+     * @param values the escape time values
+     * @param fractions the fractions of the escape times, or null
+     * @param table the RGB values of the escape time values, from the
+     * color map to use
+     * @param N the render dimension
+     * @param Wi the start x
+     * @param Wf the finish x
+     * @param Hi the start y
+     * @param Hf the finish y
+     * @param step the grid step to which the values have been computed
+     */
+    public ColorTask(int[] pixels, int[] values, float[] fractions,
+            int[] table, int N, int Wi, int Wf, int Hi, int Hf, int step) {
+        this.pixels = pixels;
+        this.values = values;
+        this.fractions = fractions;
+        this.table = table;
+        this.N = N;
+        this.Wi = Wi;
+        this.Wf = Wf;
+        this.Hi = Hi;
+        this.Hf = Hf;
+        this.step = step;
+    }
+
+    /**
+     * Color the region, splitting it along its longer side if it is larger
+     * than a tile. Pixels that have not been computed take the color of
+     * the grid pixel above and to the left of them.
+     */
+    @Override
+    protected void compute() {
+        int W = Wf - Wi;
+        int H = Hf - Hi;
+        if (W <= RenderTask.TILE && H <= RenderTask.TILE) {
+            for (int r = Wi; r < Wf; r++) {
+                for (int i = Hi; i < Hf; i++) {
+                    int g = r * N + i;
+                    if (values[g] == UNKNOWN) {
+                        g = (r - r % step) * N + i - i % step;
+                    }
+                    pixels[i * N + r] = fractions == null
+                            ? table[values[g]]
+                            : ColorMap.interpolate(table, values[g],
+                                    fractions[g]);
+                }
+            }
+        } else if (W >= H) {
+            int m = Wi + W / 2;
+            invokeAll(new ColorTask(pixels, values, fractions, table, N,
+                    Wi, m, Hi, Hf, step),
+                    new ColorTask(pixels, values, fractions, table, N,
+                            m, Wf, Hi, Hf, step));
+        } else {
+            int m = Hi + H / 2;
+            invokeAll(new ColorTask(pixels, values, fractions, table, N,
+                    Wi, Wf, Hi, m, step),
+                    new ColorTask(pixels, values, fractions, table, N,
+                            Wi, Wf, m, Hf, step));
+        }
+    }
+
+}
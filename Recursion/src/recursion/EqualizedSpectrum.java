@@ -0,0 +1,176 @@
+package recursion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * An equalized spectrum is a color map that spreads the escape time values
+ * of a render evenly over a spectrum, by their histogram. Each escape time
+ * value is colored by the fraction of the escaped pixels whose values are
+ * no larger than it, so that every part of the spectrum colors about as
+ * many pixels and the render has good contrast at any zoom and maximum
+ * iterations, without a sample rate to choose.
+ * <p>
+ * An equalized spectrum is fitted to the escape time values of each render
+ * before it colors them. The histogram is counted by every worker of the
+ * render pool over its own part of the values into a histogram of its own,
+ * so that they never contend, and the histograms are merged at the end.
+ * The histograms are kept from one fit to the next, since a progressive
+ * render fits the spectrum after every pass. Until it is fitted, it colors
+ * as its spectrum does.
+ *
+ * @author Jeff Niu
+ */
+public class EqualizedSpectrum implements ColorMap {
+
+    /**
+     * The spectrum over which the values are spread.
+     */
+    private final Spectrum sp;
+
+    /**
+     * The number of escaped pixels whose values are no larger than each
+     * value, or null if the spectrum has not been fitted.
+     */
+    private final int[] cdf;
+
+    /**
+     * The RGB values of every escape time value, for the maximum escape
+     * time to which the spectrum has been fitted.
+     */
+    private final int[] table;
+
+    /**
+     * The histograms of the workers, which are kept for the next fit, or
+     * null if the spectrum has not been fitted.
+     */
+    private int[][] histograms;
+
+    /**
+     * Create an equalized spectrum that has not been fitted to a render.
+     *
+     * @param sp the spectrum over which to spread the values
+     */
+    public EqualizedSpectrum(Spectrum sp) {
+        this.sp = sp;
+        cdf = null;
+        table = null;
+    }
+
+    /**
+     * Create an equalized spectrum fitted to the histogram of a render.
+     *
+     * @param sp the spectrum over which to spread the values
+     * @param cdf the cumulative histogram of the escape time values
+     */
+    private EqualizedSpectrum(Spectrum sp, int[] cdf) {
+        this.sp = sp;
+        this.cdf = cdf;
+        table = ColorMap.super.getTable(cdf.length - 1);
+    }
+
+    /**
+     * Fit the spectrum to the escape time values of a render. Values that
+     * are unknown or inside the set are left out of the histogram. Fits are
+     * made one at a time, since they share the histograms.
+     *
+     * @param values the escape time values
+     * @param T the maximum escape time
+     * @return the spectrum fitted to the values
+     */
+    @Override
+    public synchronized ColorMap fit(int[] values, int T) {
+        ForkJoinPool pool = AbstractRenderer.getPool();
+        int workers = pool.getParallelism();
+        if (histograms == null || histograms.length != workers
+                || histograms[0].length != T + 1) {
+            histograms = new int[workers][T + 1];
+        }
+        int[][] histograms = this.histograms;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int[] histogram = histograms[w];
+            int from = (int) ((long) values.length * w / workers);
+            int to = (int) ((long) values.length * (w + 1) / workers);
+            tasks.add(pool.submit(() -> count(values, histogram, from, to)));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        // The parallel array operations run in the pool of the worker that
+        // starts them, so that they do not spill onto the common pool
+        int[] cdf = new int[T + 1];
+        pool.submit(() -> {
+            Arrays.parallelSetAll(cdf, v -> {
+                int n = 0;
+                for (int[] histogram : histograms) {
+                    n += histogram[v];
+                }
+                return n;
+            });
+            Arrays.parallelPrefix(cdf, Integer::sum);
+        }).join();
+        return new EqualizedSpectrum(sp, cdf);
+    }
+
+    /**
+     * Count the escaped pixels of each escape time value in part of a
+     * render.
+     *
+     * @param values the escape time values
+     * @param histogram the histogram of the part, which is cleared first
+     * @param from the first pixel
+     * @param to the pixel after the last
+     */
+    private static void count(int[] values, int[] histogram, int from,
+            int to) {
+        Arrays.fill(histogram, 0);
+        for (int k = from; k < to; k++) {
+            int v = values[k];
+            if (v > 0) {
+                histogram[v]++;
+            }
+        }
+    }
+
+    /**
+     * Get the RGB value of an escape time value, from the fraction of the
+     * escaped pixels whose values are no larger than it.
+     *
+     * @param t the escape time
+     * @param T the maximum escape time
+     * @return the RGB value
+     */
+    @Override
+    public int getRGB(int t, int T) {
+        if (cdf == null || cdf.length != T + 1 || cdf[T] == 0 || t <= 0) {
+            return sp.getRGB(t, T);
+        }
+        return sp.getRGB(cdf[t], cdf[T]);
+    }
+
+    /**
+     * Get the RGB values of every escape time value up to the maximum,
+     * which are computed once the spectrum is fitted.
+     *
+     * @param T the maximum escape time
+     * @return the RGB values, indexed by escape time
+     */
+    @Override
+    public int[] getTable(int T) {
+        if (table != null && table.length == T + 1) {
+            return table;
+        }
+        return sp.getTable(T);
+    }
+
+    /**
+     * @return the name of the spectrum
+     */
+    @Override
+    public String toString() {
+        return sp + " (Equalized)";
+    }
+
+}
@@ -0,0 +1,301 @@
+package recursion;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An archive of the escape time values of a render, from which the render
+ * can be colored again with any color map without computing it again.
+ * <p>
+ * An archive starts with a header that holds the render dimension, the
+ * maximum iterations, the chunk dimension, the zoom scale, the name of the
+ * fractal, which for a Julia set holds its argument, and the center, in
+ * full. The header is followed by the offsets in the file of the chunks,
+ * square pieces of the render that are each compressed on their own, and
+ * then by the chunks, row of chunks by row of chunks. The values of a chunk
+ * are stored row by row. Everything is stored most significant byte first.
+ * A chunk is read by mapping only its part of the file, so that a render
+ * of any size can be read a row of chunks at a time.
+ *
+ * @author Jeff Niu
+ */
+public class EscapeArchive implements Closeable {
+
+    /**
+     * The magic number that starts an archive, "ESCA".
+     */
+    static final int MAGIC = 0x45534341;
+    /**
+     * The version of the archive format.
+     */
+    static final int VERSION = 1;
+    /**
+     * The chunk dimension.
+     */
+    static final int CHUNK = 256;
+    /**
+     * The length of the part of the header before the strings, in bytes.
+     */
+    static final int HEADER = 28;
+
+    /**
+     * The file channel of the archive.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The render dimension, the maximum iterations and the chunk dimension.
+     */
+    private final int N, T, C;
+
+    /**
+     * The number of chunks along each side of the render.
+     */
+    private final int chunks;
+
+    /**
+     * The zoom scale.
+     */
+    private final double s;
+
+    /**
+     * The name of the fractal.
+     */
+    private final String fractal;
+
+    /**
+     * The center.
+     */
+    private final BigDecimal xc, yc;
+
+    /**
+     * The offsets in the file of the chunks, and of the end of the last.
+     */
+    private final LongBuffer offsets;
+
+    /**
+     * Open an archive and read its header.
+     *
+     * @param file the archive file
+     * @throws IOException if the file cannot be read or is not an archive
+     */
+    public EscapeArchive(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, HEADER);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not an escape archive.");
+            }
+            N = header.getInt();
+            T = header.getInt();
+            C = header.getInt();
+            s = header.getDouble();
+            long position = HEADER;
+            String[] strings = new String[3];
+            for (int k = 0; k < strings.length; k++) {
+                int length = read(position, 4).getInt();
+                strings[k] = new String(read(position + 4, length).array(),
+                        StandardCharsets.UTF_8);
+                position += 4 + length;
+            }
+            fractal = strings[0];
+            xc = new BigDecimal(strings[1]);
+            yc = new BigDecimal(strings[2]);
+            chunks = (N + C - 1) / C;
+            offsets = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    8L * (chunks * chunks + 1)).asLongBuffer();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Encode a string of the header.
+     *
+     * @param string the string
+     * @return the bytes of the string
+     */
+    static byte[] encode(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read bytes of the file.
+     *
+     * @param position the position in the file
+     * @param length the number of bytes
+     * @return the bytes, ready to be read
+     * @throws IOException if the bytes cannot be read
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of archive.");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    /**
+     * @return the render dimension
+     */
+    public int getDimension() {
+        return N;
+    }
+
+    /**
+     * @return the maximum iterations
+     */
+    public int getMaxIterations() {
+        return T;
+    }
+
+    /**
+     * @return the number of rows in each row of chunks
+     */
+    public int getChunkSize() {
+        return C;
+    }
+
+    /**
+     * @return the name of the fractal, with the argument of a Julia set
+     */
+    public String getFractal() {
+        return fractal;
+    }
+
+    /**
+     * @return the center x
+     */
+    public BigDecimal getCenterX() {
+        return xc;
+    }
+
+    /**
+     * @return the center y
+     */
+    public BigDecimal getCenterY() {
+        return yc;
+    }
+
+    /**
+     * @return the zoom scale
+     */
+    public double getScale() {
+        return s;
+    }
+
+    /**
+     * Read the escape time values of a chunk.
+     *
+     * @param cx the chunk x
+     * @param cy the chunk y
+     * @return the escape time values of the chunk, row by row; the chunks
+     * at the edge of the render may be smaller
+     * @throws IOException if the chunk cannot be read
+     */
+    public int[] readChunk(int cx, int cy) throws IOException {
+        int k = cy * chunks + cx;
+        long start = offsets.get(k);
+        int length = (int) (offsets.get(k + 1) - start);
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY,
+                start, length);
+        byte[] compressed = new byte[length];
+        mapping.get(compressed);
+        int W = Math.min(C, N - cx * C);
+        int H = Math.min(C, N - cy * C);
+        byte[] data = new byte[4 * W * H];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < data.length && !inflater.finished()) {
+                int m = inflater.inflate(data, n, data.length - n);
+                if (m == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += m;
+            }
+            if (n != data.length) {
+                throw new IOException("Chunk " + cx + ", " + cy
+                        + " is truncated.");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException(ex);
+        } finally {
+            inflater.end();
+        }
+        int[] values = new int[W * H];
+        ByteBuffer.wrap(data).asIntBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Read the escape time values of a row of chunks.
+     *
+     * @param cy the chunk y
+     * @return the escape time values of the rows, row by row
+     * @throws IOException if a chunk cannot be read
+     */
+    public int[] readRows(int cy) throws IOException {
+        int H = Math.min(C, N - cy * C);
+        int[] rows = new int[H * N];
+        for (int cx = 0; cx < chunks; cx++) {
+            int[] chunk = readChunk(cx, cy);
+            int W = Math.min(C, N - cx * C);
+            for (int i = 0; i < H; i++) {
+                System.arraycopy(chunk, i * W, rows, i * N + cx * C, W);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Color the render and save it as a PNG image, a row of chunks at a
+     * time.
+     *
+     * @param cm the color map to use
+     * @param png the image file
+     * @throws IOException if the archive cannot be read or the image
+     * cannot be written
+     */
+    public void recolor(ColorMap cm, File png) throws IOException {
+        try (PngWriter out = new PngWriter(new BufferedOutputStream(
+                new FileOutputStream(png)), N, N)) {
+            int[] table = cm.getTable(T);
+            for (int cy = 0; cy < chunks; cy++) {
+                int[] rgb = readRows(cy);
+                for (int k = 0; k < rgb.length; k++) {
+                    rgb[k] = table[rgb[k]];
+                }
+                out.write(rgb);
+            }
+        }
+    }
+
+    /**
+     * Close the archive.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,228 @@
+package recursion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * A writer of escape time archives, which takes the escape time values of
+ * a render a few rows at a time, like a PNG writer does, and writes them
+ * out in chunks as soon as a row of chunks is done. The chunks of a row
+ * are compressed in parallel. The format of an archive is described by
+ * {@link EscapeArchive}.
+ *
+ * @author Jeff Niu
+ */
+public class EscapeArchiveWriter implements Closeable {
+
+    /**
+     * The file channel of the archive.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The render dimension.
+     */
+    private final int N;
+
+    /**
+     * The number of chunks along each side of the render.
+     */
+    private final int chunks;
+
+    /**
+     * The position in the file of the offsets of the chunks.
+     */
+    private final long table;
+
+    /**
+     * The offsets in the file of the chunks, and of the end of the last.
+     */
+    private final long[] offsets;
+
+    /**
+     * The escape time values of the row of chunks being filled, row by row.
+     */
+    private final int[] band;
+
+    /**
+     * The number of rows written so far.
+     */
+    private int rows;
+
+    /**
+     * Create a new escape time archive and write its header.
+     *
+     * @param file the archive file
+     * @param N the render dimension
+     * @param T the maximum iterations
+     * @param fractal the name of the fractal, which holds the argument of a
+     * Julia set
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @throws IOException if the header cannot be written
+     */
+    public EscapeArchiveWriter(File file, int N, int T, String fractal,
+            BigDecimal xc, BigDecimal yc, double s) throws IOException {
+        this.N = N;
+        chunks = (N + EscapeArchive.CHUNK - 1) / EscapeArchive.CHUNK;
+        offsets = new long[chunks * chunks + 1];
+        band = new int[EscapeArchive.CHUNK * N];
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        byte[][] strings = {
+            EscapeArchive.encode(fractal == null ? "" : fractal),
+            EscapeArchive.encode(xc.toPlainString()),
+            EscapeArchive.encode(yc.toPlainString())
+        };
+        int length = EscapeArchive.HEADER;
+        for (byte[] string : strings) {
+            length += 4 + string.length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(length);
+        header.putInt(EscapeArchive.MAGIC);
+        header.putInt(EscapeArchive.VERSION);
+        header.putInt(N);
+        header.putInt(T);
+        header.putInt(EscapeArchive.CHUNK);
+        header.putDouble(s);
+        for (byte[] string : strings) {
+            header.putInt(string.length);
+            header.put(string);
+        }
+        header.flip();
+        writeFully(header, 0);
+        // The offsets are only known once the chunks are written, so their
+        // room is left for them and they are written on close
+        table = length;
+        channel.position(table + 8L * offsets.length);
+    }
+
+    /**
+     * Write the escape time values of the next rows of the render.
+     *
+     * @param values the escape time values of whole rows, row by row
+     * @throws IOException if a row of chunks cannot be written
+     */
+    public void write(int[] values) throws IOException {
+        int n = values.length / N;
+        int k = 0;
+        while (k < n) {
+            int filled = rows % EscapeArchive.CHUNK;
+            int m = Math.min(n - k, EscapeArchive.CHUNK - filled);
+            System.arraycopy(values, k * N, band, filled * N, m * N);
+            rows += m;
+            k += m;
+            if (rows % EscapeArchive.CHUNK == 0 || rows == N) {
+                writeChunks((rows - 1) / EscapeArchive.CHUNK,
+                        (rows - 1) % EscapeArchive.CHUNK + 1);
+            }
+        }
+    }
+
+    /**
+     * Compress and write out the filled row of chunks.
+     *
+     * @param cy the chunk y
+     * @param H the number of rows of the chunks
+     * @throws IOException if the chunks cannot be written
+     */
+    private void writeChunks(int cy, int H) throws IOException {
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+        for (int cx = 0; cx < chunks; cx++) {
+            int x = cx * EscapeArchive.CHUNK;
+            int W = Math.min(EscapeArchive.CHUNK, N - x);
+            tasks.add(() -> compress(x, W, H));
+        }
+        try {
+            int cx = 0;
+            for (Future<byte[]> task
+                    : AbstractRenderer.getPool().invokeAll(tasks)) {
+                offsets[cy * chunks + cx++] = channel.position();
+                ByteBuffer chunk = ByteBuffer.wrap(task.get());
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Compress a chunk of the filled row of chunks.
+     *
+     * @param x the x of the first pixel of the chunk
+     * @param W the chunk width
+     * @param H the chunk height
+     * @return the compressed chunk
+     */
+    private byte[] compress(int x, int W, int H) {
+        ByteBuffer data = ByteBuffer.allocate(4 * W * H);
+        IntBuffer ints = data.asIntBuffer();
+        for (int i = 0; i < H; i++) {
+            ints.put(band, i * N + x, W);
+        }
+        Deflater deflater = new Deflater();
+        deflater.setInput(data.array());
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1 << 16];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Write a buffer at a position in the file.
+     *
+     * @param buf the buffer
+     * @param position the position in the file
+     * @throws IOException if the buffer cannot be written
+     */
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    /**
+     * Write the offsets of the chunks and close the archive.
+     *
+     * @throws IOException if the archive cannot be finished, or if fewer
+     * rows have been written than the render has
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rows != N) {
+                throw new IOException("Wrote " + rows + " of " + N
+                        + " rows.");
+            }
+            offsets[offsets.length - 1] = channel.position();
+            ByteBuffer buf = ByteBuffer.allocate(8 * offsets.length);
+            buf.asLongBuffer().put(offsets);
+            writeFully(buf, table);
+        } finally {
+            channel.close();
+        }
+    }
+
+}
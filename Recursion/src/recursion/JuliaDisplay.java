@@ -37,6 +37,7 @@ class JuliaDisplay extends AbstractDisplay {
     public void changeJuliaParameter(double cx, double cy) {
         this.cx = cx;
         this.cy = cy;
+        discardValues();
         render();
     }
 
@@ -45,10 +46,11 @@ class JuliaDisplay extends AbstractDisplay {
      *
      * @param N the render dimension
      * @param T the maximum iterations
+     * @param s the zoom scale
      * @return the Julia renderer
      */
     @Override
-    public AbstractRenderer getRenderer(int N, int T) {
+    public AbstractRenderer getRenderer(int N, int T, double s) {
         return new JuliaRenderer(N, T, cx, cy);
     }
 
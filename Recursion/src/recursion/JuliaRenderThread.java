@@ -1,7 +1,10 @@
 package recursion;
 
+import static java.lang.Math.abs;
+import java.util.Arrays;
+
 /**
- * A rendering thread for the Julia set.
+ * The rendering logic for the Julia set.
  *
  * @author Jeff Niu
  */
@@ -15,8 +18,6 @@ public class JuliaRenderThread extends AbstractRenderThread {
     /**
      * Create the render thread
      *
-     * @param Wi the start x
-     * @param Wf the finish x
      * @param N the render dimension
      * @param T the maximum number of iterations
      * @param values the escape time values
@@ -26,10 +27,10 @@ public class JuliaRenderThread extends AbstractRenderThread {
      * @param cx the argument x
      * @param cy the argument y
      */
-    public JuliaRenderThread(int Wi, int Wf, int N, int T,
-            int[] values, double xc, double yc, double s,
+    public JuliaRenderThread(int N, int T, int[] values,
+            double xc, double yc, double s,
             double cx, double cy) {
-        super(Wi, Wf, N, T, values, xc, yc, s);
+        super(N, T, values, xc, yc, s);
         this.cx = cx;
         this.cy = cy;
     }
@@ -45,10 +46,33 @@ public class JuliaRenderThread extends AbstractRenderThread {
      */
     @Override
     public int compute(double x0, double y0, int T) {
+        return compute(x0, y0, T, null, 0);
+    }
+
+    /**
+     * Compute the escape time value of the Julia set at a point, along
+     * with the fraction of it if an array is given for it. Points whose
+     * orbits become periodic are in the filled Julia set.
+     *
+     * @param x0 the point x
+     * @param y0 the point y
+     * @param T the maximum escape time
+     * @param f the array to which the fraction will be stored, or null
+     * @param k the index at which to store the fraction
+     * @return the escape time
+     */
+    @Override
+    public int compute(double x0, double y0, int T, float[] f, int k) {
+        double eps = getTolerance();
         double x = x0;
         double y = y0;
         double xSq = x * x;
         double ySq = y * y;
+        // The orbit point against which periodicity is checked, which
+        // moves on at every power of two iterations (Brent's method)
+        double xp = x;
+        double yp = y;
+        int p = 1;
         int t = 0;
         while (xSq + ySq < 4 && t < T) {
             y = x * y;
@@ -58,8 +82,57 @@ public class JuliaRenderThread extends AbstractRenderThread {
             xSq = x * x;
             ySq = y * y;
             t++;
+            if (abs(x - xp) < eps && abs(y - yp) < eps) {
+                return T;
+            }
+            if (t == p) {
+                xp = x;
+                yp = y;
+                p <<= 1;
+            }
+        }
+        if (f != null && t < T) {
+            f[k] = fraction(x, y, cx, cy);
         }
         return t;
     }
 
+    /**
+     * Compute the escape time value of the Julia set at a point given in
+     * double-double.
+     *
+     * @param x0 the point x
+     * @param x0Lo the low part of the point x
+     * @param y0 the point y
+     * @param y0Lo the low part of the point y
+     * @param T the maximum escape time
+     * @return the escape time
+     */
+    @Override
+    public int compute(double x0, double x0Lo, double y0, double y0Lo,
+            int T) {
+        return iteratePrecise(x0, x0Lo, y0, y0Lo, cx, 0, cy, 0, T,
+                getTolerance());
+    }
+
+    /**
+     * Compute the escape times of several points in the Julia set through
+     * the vectorized kernel.
+     *
+     * @param x0 the x coordinates
+     * @param y0 the y coordinates
+     * @param t the array to which the escape times will be stored
+     * @param n the number of points
+     * @param T the maximum number of iterations
+     */
+    @Override
+    public void compute(double[] x0, double[] y0, int[] t, int n, int T) {
+        // The orbits start from the points themselves
+        double[] a = new double[n];
+        double[] b = new double[n];
+        Arrays.fill(a, cx);
+        Arrays.fill(b, cy);
+        iterate(x0, y0, a, b, t, n, T);
+    }
+
 }
@@ -1,5 +1,7 @@
 package recursion;
 
+import java.math.BigDecimal;
+
 /**
  * A renderer for the Julia set.
  *
@@ -27,10 +29,39 @@ public class JuliaRenderer extends AbstractRenderer {
     }
 
     /**
-     * Render a Julia render thread.
+     * @return the name of the Julia set of the argument
+     */
+    @Override
+    public String getFractal() {
+        return "Julia " + cx + " " + cy;
+    }
+
+    /**
+     * A Julia set is symmetric across the real axis when its argument is
+     * real.
+     *
+     * @return whether the argument is real
+     */
+    @Override
+    protected boolean isConjugateSymmetric() {
+        return cy == 0;
+    }
+
+    /**
+     * Every Julia set is symmetric about the origin, as z and -z have the
+     * same square.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isPointSymmetric() {
+        return true;
+    }
+
+    /**
+     * Render a Julia render thread. Zooms too deep for double are computed
+     * in double-double.
      * 
-     * @param Wi the start x
-     * @param Wf the finish x
      * @param N the rendering dimension
      * @param T the maximum iterations
      * @param values the escape time values
@@ -40,10 +71,14 @@ public class JuliaRenderer extends AbstractRenderer {
      * @return a render thread
      */
     @Override
-    public AbstractRenderThread getRenderThread(int Wi, int Wf, int N,
-            int T, int[] values, double xc, double yc, double s) {
-        return new JuliaRenderThread(Wi, Wf, N, T, values,
-                xc, yc, s, cx, cy);
+    public AbstractRenderThread getRenderThread(int N, int T,
+            int[] values, BigDecimal xc, BigDecimal yc, double s) {
+        AbstractRenderThread thread = new JuliaRenderThread(N, T, values,
+                xc.doubleValue(), yc.doubleValue(), s, cx, cy);
+        if (s / N < MIN_DOUBLE_SPACING) {
+            thread.setPreciseCenter(xc, yc);
+        }
+        return thread;
     }
 
 }
@@ -19,14 +19,20 @@ class MandelbrotDisplay extends AbstractDisplay {
     }
 
     /**
-     * Get the Mandelbrot renderer.
+     * Get the Mandelbrot renderer. Deep zooms, at which the pixels are
+     * closer together than double can tell apart, are rendered by
+     * perturbation.
      * 
      * @param N the render dimension
      * @param T the maximum iterations
+     * @param s the zoom scale
      * @return 
      */
     @Override
-    public AbstractRenderer getRenderer(int N, int T) {
+    public AbstractRenderer getRenderer(int N, int T, double s) {
+        if (s / N < PerturbationRenderer.MAX_SPACING) {
+            return new PerturbationRenderer(N, T);
+        }
         return new MandelbrotRenderer(N, T);
     }
 }
@@ -1,27 +1,36 @@
 package recursion;
 
+import static java.lang.Math.abs;
+
 /**
- * A rendering thread for the Mandelbrot set.
+ * The rendering logic for the Mandelbrot set.
  * 
  * @author Jeff Niu
  */
 public class MandelbrotRenderThread extends AbstractRenderThread {
 
+    /**
+     * Whether points in the main cardioid and the period-2 bulb are
+     * detected before iterating.
+     */
+    private final boolean bulbCheck;
+
     /**
      * Get the render thread.
      * 
-     * @param Wi the start x
-     * @param Wf the finish x
      * @param N the render dimension
      * @param T the maximum iterations
      * @param values the escape time values
      * @param xc the center x
      * @param yc the center y
      * @param s the zoom scale
+     * @param bulbCheck whether to detect the main cardioid and the
+     * period-2 bulb
      */
-    public MandelbrotRenderThread(int Wi, int Wf, int N, int T,
-            int[] values, double xc, double yc, double s) {
-        super(Wi, Wf, N, T, values, xc, yc, s);
+    public MandelbrotRenderThread(int N, int T, int[] values,
+            double xc, double yc, double s, boolean bulbCheck) {
+        super(N, T, values, xc, yc, s);
+        this.bulbCheck = bulbCheck;
     }
 
     /**
@@ -34,10 +43,36 @@ public class MandelbrotRenderThread extends AbstractRenderThread {
      */
     @Override
     public int compute(double x0, double y0, int T) {
+        return compute(x0, y0, T, null, 0);
+    }
+
+    /**
+     * Compute the escape time at a point in the Mandelbrot set, along with
+     * the fraction of it if an array is given for it. Points whose orbits
+     * become periodic are inside the set.
+     *
+     * @param x0 the point x
+     * @param y0 the point y
+     * @param T the maximum number of iterations
+     * @param f the array to which the fraction will be stored, or null
+     * @param k the index at which to store the fraction
+     * @return the escape time value
+     */
+    @Override
+    public int compute(double x0, double y0, int T, float[] f, int k) {
+        if (bulbCheck && inBulb(x0, y0)) {
+            return T;
+        }
+        double eps = getTolerance();
         double x = 0;
         double y = 0;
         double xSq = x * x;
         double ySq = y * y;
+        // The orbit point against which periodicity is checked, which
+        // moves on at every power of two iterations (Brent's method)
+        double xp = x;
+        double yp = y;
+        int p = 1;
         int t = 0;
         while (xSq + ySq < 4 && t < T) {
             y = x * y;
@@ -47,8 +82,96 @@ public class MandelbrotRenderThread extends AbstractRenderThread {
             xSq = x * x;
             ySq = y * y;
             t++;
+            if (abs(x - xp) < eps && abs(y - yp) < eps) {
+                return T;
+            }
+            if (t == p) {
+                xp = x;
+                yp = y;
+                p <<= 1;
+            }
+        }
+        if (f != null && t < T) {
+            f[k] = fraction(x, y, x0, y0);
         }
         return t;
     }
 
+    /**
+     * Compute the escape time at a point in the Mandelbrot set in
+     * double-double.
+     *
+     * @param x0 the point x
+     * @param x0Lo the low part of the point x
+     * @param y0 the point y
+     * @param y0Lo the low part of the point y
+     * @param T the maximum number of iterations
+     * @return the escape time value
+     */
+    @Override
+    public int compute(double x0, double x0Lo, double y0, double y0Lo,
+            int T) {
+        if (bulbCheck && inBulb(x0, y0)) {
+            return T;
+        }
+        return iteratePrecise(0, 0, 0, 0, x0, x0Lo, y0, y0Lo, T,
+                getTolerance());
+    }
+
+    /**
+     * Compute the escape times of several points in the Mandelbrot set
+     * through the vectorized kernel. The points in the cardioid and the
+     * bulb are left out of it.
+     *
+     * @param x0 the x coordinates
+     * @param y0 the y coordinates
+     * @param t the array to which the escape times will be stored
+     * @param n the number of points
+     * @param T the maximum number of iterations
+     */
+    @Override
+    public void compute(double[] x0, double[] y0, int[] t, int n, int T) {
+        int[] k = new int[n];
+        double[] cx = new double[n];
+        double[] cy = new double[n];
+        int m = 0;
+        for (int g = 0; g < n; g++) {
+            if (bulbCheck && inBulb(x0[g], y0[g])) {
+                t[g] = T;
+            } else {
+                k[m] = g;
+                cx[m] = x0[g];
+                cy[m] = y0[g];
+                m++;
+            }
+        }
+        // The orbits all start from zero
+        int[] tm = new int[m];
+        iterate(new double[m], new double[m], cx, cy, tm, m, T);
+        for (int g = 0; g < m; g++) {
+            t[k[g]] = tm[g];
+        }
+    }
+
+    /**
+     * Check whether a point lies in the main cardioid or the period-2
+     * bulb, where it would never escape.
+     *
+     * @param x0 the point x
+     * @param y0 the point y
+     * @return whether the point is in the cardioid or the bulb
+     */
+    private static boolean inBulb(double x0, double y0) {
+        double ySq = y0 * y0;
+        // The main cardioid
+        double x = x0 - 0.25;
+        double q = x * x + ySq;
+        if (q * (q + x) <= 0.25 * ySq) {
+            return true;
+        }
+        // The period-2 bulb, the disk of radius 1/4 around -1
+        x = x0 + 1;
+        return x * x + ySq <= 0.0625;
+    }
+
 }
@@ -1,5 +1,7 @@
 package recursion;
 
+import java.math.BigDecimal;
+
 /**
  * A renderer for the Mandelbrot set.
  * 
@@ -7,6 +9,12 @@ package recursion;
  */
 public class MandelbrotRenderer extends AbstractRenderer {
 
+    /**
+     * Whether the render threads detect the main cardioid and the
+     * period-2 bulb before iterating.
+     */
+    private boolean bulbCheck;
+
     /**
      * Create a new Mandelbrot renderer.
      * 
@@ -15,13 +23,42 @@ public class MandelbrotRenderer extends AbstractRenderer {
      */
     public MandelbrotRenderer(int N, int T) {
         super(N, T);
+        bulbCheck = true;
+    }
+
+    /**
+     * Set whether points in the main cardioid and the period-2 bulb are
+     * detected in closed form instead of being iterated up to the maximum
+     * iterations. This is on by default.
+     *
+     * @param bulbCheck whether to detect the cardioid and the bulb
+     */
+    public void setBulbCheck(boolean bulbCheck) {
+        this.bulbCheck = bulbCheck;
+    }
+
+    /**
+     * @return the name of the Mandelbrot set
+     */
+    @Override
+    public String getFractal() {
+        return "Mandelbrot";
+    }
+
+    /**
+     * The Mandelbrot set is symmetric across the real axis.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isConjugateSymmetric() {
+        return true;
     }
 
     /**
-     * Get a render thread for a particular vertical strip.
+     * Get the render thread for a render. Zooms too deep for double are
+     * computed in double-double.
      * 
-     * @param Wi the start x
-     * @param Wf the start y
      * @param N the render dimension
      * @param T the maximum number of iterations
      * @param values the escape time values
@@ -31,9 +68,14 @@ public class MandelbrotRenderer extends AbstractRenderer {
      * @return a render thread
      */
     @Override
-    public AbstractRenderThread getRenderThread(int Wi, int Wf, int N,
-            int T, int[] values, double xc, double yc, double s) {
-        return new MandelbrotRenderThread(Wi, Wf, N, T, values, xc, yc, s);
+    public AbstractRenderThread getRenderThread(int N, int T,
+            int[] values, BigDecimal xc, BigDecimal yc, double s) {
+        AbstractRenderThread thread = new MandelbrotRenderThread(N, T,
+                values, xc.doubleValue(), yc.doubleValue(), s, bulbCheck);
+        if (s / N < MIN_DOUBLE_SPACING) {
+            thread.setPreciseCenter(xc, yc);
+        }
+        return thread;
     }
     
 }
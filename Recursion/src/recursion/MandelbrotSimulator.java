@@ -41,8 +41,8 @@ public class MandelbrotSimulator extends AbstractSimulator {
      */
     private void createJulia(ActionEvent ae) {
         try {
-            double cx = getCenterX();
-            double cy = getCenterY();
+            double cx = getCenterX().doubleValue();
+            double cy = getCenterY().doubleValue();
             if (cx < -2.0 || cx > 2.0 || cy < -2.0 || cy > 2.0) {
                 output("Invalid Julia parameters.");
                 return;
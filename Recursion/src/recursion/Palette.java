@@ -1,18 +1,66 @@
 package recursion;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * A palette is a color map that maps escape time values to a repeating set
  * of RGB values. The palette objects are most easily created by taking a
  * far more easily defined spectrum object and then sampling at a
- * particular rate, which becomes the period.
+ * particular rate, which becomes the period. The palettes sampled last are
+ * kept, so that a palette is only sampled once while it is in use.
  *
  * @author Jeff Niu
  */
 public class Palette implements ColorMap {
 
+    /**
+     * The number of palettes that are kept.
+     */
+    private static final int KEPT_PALETTES = 16;
+
+    /**
+     * The palettes that have been sampled, by spectrum and period, from
+     * least to most recently used. The least recently used is dropped once
+     * more than {@link #KEPT_PALETTES} are kept, since every sample rate
+     * typed in is a palette of its own.
+     */
+    private static final Map<String, Palette> PALETTES
+            = new LinkedHashMap<String, Palette>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Palette> e) {
+            return size() > KEPT_PALETTES;
+        }
+    };
+
     private final int[] palette;
     private final int P;
 
+    /**
+     * The period less one if the period is a power of two, by which escape
+     * times are masked instead of being divided, or -1 otherwise.
+     */
+    private final int mask;
+
+    /**
+     * The RGB values of every escape time value, for the maximum escape
+     * time for which they were last asked.
+     */
+    private volatile int[] table;
+
+    /**
+     * Get the palette sampled from a spectrum at a rate, which is sampled
+     * only if it is not kept.
+     *
+     * @param sp the spectrum from which to sample the palette
+     * @param P the sample rate, which is the period of the palette
+     * @return the palette
+     */
+    public static synchronized Palette getPalette(Spectrum sp, int P) {
+        return PALETTES.computeIfAbsent(sp + " " + P,
+                key -> new Palette(sp, P));
+    }
+
     /**
      * Create a color Palette from an already-defined color Spectrum. It is
      * far easier to generate a Palette from a color Spectrum than to do so
@@ -25,6 +73,7 @@ public class Palette implements ColorMap {
      */
     public Palette(Spectrum sp, int P) {
         this.P = P;
+        mask = (P & (P - 1)) == 0 ? P - 1 : -1;
         palette = new int[P];
         // Sample the color spectrum
         for (int p = 0; p < P; p++) {
@@ -41,8 +90,25 @@ public class Palette implements ColorMap {
      */
     @Override
     public int getRGB(int t, int T) {
-        t %= P;
-        return palette[t];
+        return palette[mask >= 0 ? t & mask : t % P];
+    }
+
+    /**
+     * Get the RGB values of every escape time value up to the maximum, the
+     * palette repeated. The table is kept, so that it is only computed
+     * again when the maximum changes.
+     *
+     * @param T the maximum escape time (only the table length)
+     * @return the RGB values, indexed by escape time
+     */
+    @Override
+    public int[] getTable(int T) {
+        int[] table = this.table;
+        if (table == null || table.length != T + 1) {
+            table = ColorMap.super.getTable(T);
+            this.table = table;
+        }
+        return table;
     }
 
     /**
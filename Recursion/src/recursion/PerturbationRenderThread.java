@@ -0,0 +1,119 @@
+package recursion;
+
+/**
+ * The rendering logic for the Mandelbrot set at deep zooms. The orbit of
+ * every pixel is iterated as an offset from a reference orbit that has
+ * been computed at high precision, so that the offsets, which are about
+ * as small as the pixels, stay precise in double arithmetic.
+ * <p>
+ * The points that this render thread computes are offsets from the point
+ * of the reference orbit, rather than points of the plane.
+ *
+ * @author Jeff Niu
+ */
+public class PerturbationRenderThread extends AbstractRenderThread {
+
+    /**
+     * The reference orbit, rounded to double.
+     */
+    private final double[] X, Y;
+
+    /**
+     * The number of iterations of the reference orbit. The reference point
+     * escapes at this iteration, unless it is the maximum iterations.
+     */
+    private final int length;
+
+    /**
+     * Create a new perturbation render thread.
+     *
+     * @param N the render dimension
+     * @param T the maximum iterations
+     * @param values the escape time values
+     * @param dx the center x less the reference x
+     * @param dy the center y less the reference y
+     * @param s the zoom scale
+     * @param X the reference orbit x
+     * @param Y the reference orbit y
+     * @param length the number of iterations of the reference orbit
+     */
+    public PerturbationRenderThread(int N, int T, int[] values,
+            double dx, double dy, double s,
+            double[] X, double[] Y, int length) {
+        super(N, T, values, dx, dy, s);
+        this.X = X;
+        this.Y = Y;
+        this.length = length;
+    }
+
+    /**
+     * Compute the escape time at a point as an offset from the reference.
+     * With the reference orbit Z and the orbit z = Z + d of the point at
+     * an offset d0 from the reference point, the offset is iterated as
+     * d = 2Zd + d^2 + d0, which only involves small numbers.
+     * <p>
+     * The offset loses its precision (a glitch) when the orbit passes
+     * closer to zero than the offset is large, since z is then the small
+     * difference of two large numbers. The offset also cannot be iterated
+     * past the end of the reference orbit. In either case the point is
+     * re-referenced to the start of the reference orbit: as the reference
+     * orbit starts from zero, the orbit itself becomes the new offset and
+     * the point carries on from there.
+     *
+     * @param dx0 the offset x from the reference point
+     * @param dy0 the offset y from the reference point
+     * @param T the maximum number of iterations
+     * @return the escape time
+     */
+    @Override
+    public int compute(double dx0, double dy0, int T) {
+        return compute(dx0, dy0, T, null, 0);
+    }
+
+    /**
+     * Compute the escape time at a point as an offset from the reference,
+     * along with the fraction of it if an array is given for it. The orbit
+     * is followed past its escape from the point of the reference, which
+     * is as good as the point itself once the orbit is that large.
+     *
+     * @param dx0 the offset x from the reference point
+     * @param dy0 the offset y from the reference point
+     * @param T the maximum number of iterations
+     * @param f the array to which the fraction will be stored, or null
+     * @param k the index at which to store the fraction
+     * @return the escape time
+     */
+    @Override
+    public int compute(double dx0, double dy0, int T, float[] f, int k) {
+        double dx = 0;
+        double dy = 0;
+        // The iteration of the reference orbit that the offset is from
+        int m = 0;
+        for (int t = 0;; t++) {
+            double Xm = X[m];
+            double Ym = Y[m];
+            double x = Xm + dx;
+            double y = Ym + dy;
+            double zSq = x * x + y * y;
+            if (zSq >= 4 || t == T) {
+                if (f != null && t < T) {
+                    // The reference orbit starts at 0, c
+                    f[k] = fraction(x, y, X[1], Y[1]);
+                }
+                return t;
+            }
+            if (m == length || zSq < dx * dx + dy * dy) {
+                dx = x;
+                dy = y;
+                Xm = 0;
+                Ym = 0;
+                m = 0;
+            }
+            double dxn = 2 * (Xm * dx - Ym * dy) + dx * dx - dy * dy + dx0;
+            dy = 2 * (Xm * dy + Ym * dx + dx * dy) + dy0;
+            dx = dxn;
+            m++;
+        }
+    }
+
+}
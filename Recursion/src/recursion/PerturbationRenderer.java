@@ -0,0 +1,161 @@
+package recursion;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import static java.lang.Math.ceil;
+import static java.lang.Math.log10;
+import static java.lang.Math.max;
+
+/**
+ * A renderer for deep zooms into the Mandelbrot set, past the precision
+ * of double. Only one orbit, the reference at the center, is iterated at
+ * high precision; every pixel is iterated in double as a small offset from
+ * it, so that deep zooms render about as fast as shallow ones.
+ *
+ * @author Jeff Niu
+ */
+public class PerturbationRenderer extends AbstractRenderer {
+
+    /**
+     * The pixel spacing below which even the double-double kernels run
+     * out of precision and deep zooms have to be rendered by perturbation.
+     */
+    public static final double MAX_SPACING = 1e-29;
+
+    /**
+     * The number of significant digits to which the reference orbit is
+     * computed beyond those of the pixel spacing.
+     */
+    private static final int EXTRA_DIGITS = 20;
+    /**
+     * The number of iterations of the reference orbit between checks for
+     * cancellation.
+     */
+    private static final int CANCEL_INTERVAL = 1024;
+
+    /**
+     * The reference orbit, rounded to double, which is kept so that every
+     * pass of a progressive render uses the same one.
+     */
+    private double[] X, Y;
+    /**
+     * The number of iterations of the reference orbit.
+     */
+    private int length;
+    /**
+     * The reference point.
+     */
+    private BigDecimal xc, yc;
+    /**
+     * The pixel spacing to whose precision the reference orbit has been
+     * computed.
+     */
+    private double h;
+    /**
+     * The maximum iterations to which the reference orbit has been
+     * computed.
+     */
+    private int T;
+
+    /**
+     * Create a new perturbation renderer.
+     *
+     * @param N the render dimension
+     * @param T the maximum iterations
+     */
+    public PerturbationRenderer(int N, int T) {
+        super(N, T);
+    }
+
+    /**
+     * Iterate the orbit of the center at high precision. The precision
+     * follows the pixel spacing, so that the orbit is exact to well below
+     * a pixel. The orbit stops once the center escapes, and early, should
+     * the render be cancelled.
+     *
+     * @param N the render dimension
+     * @param T the maximum number of iterations
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     */
+    private void createReference(int N, int T,
+            BigDecimal xc, BigDecimal yc, double s) {
+        MathContext mc = new MathContext(EXTRA_DIGITS
+                + max(0, (int) ceil(-log10(s / N))));
+        X = new double[T + 1];
+        Y = new double[T + 1];
+        BigDecimal x = BigDecimal.ZERO;
+        BigDecimal y = BigDecimal.ZERO;
+        int t = 0;
+        while (true) {
+            X[t] = x.doubleValue();
+            Y[t] = y.doubleValue();
+            if (t == T || X[t] * X[t] + Y[t] * Y[t] >= 4) {
+                break;
+            }
+            if (t % CANCEL_INTERVAL == 0 && isCancelled()) {
+                break;
+            }
+            BigDecimal xy = x.multiply(y, mc);
+            BigDecimal xn = x.multiply(x, mc).subtract(y.multiply(y, mc))
+                    .add(xc, mc);
+            y = xy.add(xy).add(yc, mc);
+            x = xn;
+            t++;
+        }
+        length = t;
+        this.xc = xc;
+        this.yc = yc;
+        h = s / N;
+        this.T = T;
+    }
+
+    /**
+     * @return the name of the Mandelbrot set
+     */
+    @Override
+    public String getFractal() {
+        return "Mandelbrot";
+    }
+
+    /**
+     * The Mandelbrot set is symmetric across the real axis.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean isConjugateSymmetric() {
+        return true;
+    }
+
+    /**
+     * Get the render thread for a render, which iterates the pixels as
+     * offsets from the reference orbit. The reference orbit is that of the
+     * center of the first view, and is only computed again when the pixel
+     * spacing or the maximum iterations change, so that it is shared by
+     * the passes of a progressive render and the blocks of a large one;
+     * re-referencing keeps the offsets precise however far the views are
+     * from the reference point.
+     *
+     * @param N the render dimension
+     * @param T the maximum number of iterations
+     * @param values the escape time values
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @return a render thread
+     */
+    @Override
+    public AbstractRenderThread getRenderThread(int N, int T,
+            int[] values, BigDecimal xc, BigDecimal yc, double s) {
+        if (this.xc == null || s / N != h || T != this.T) {
+            createReference(N, T, xc, yc, s);
+        }
+        // The pixels are offsets from the reference point
+        return new PerturbationRenderThread(N, T, values,
+                xc.subtract(this.xc).doubleValue(),
+                yc.subtract(this.yc).doubleValue(), s, X, Y, length);
+    }
+
+}
@@ -0,0 +1,305 @@
+package recursion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG writer that takes an image a few rows at a time and writes them
+ * out as it goes, so that an image never has to be held in memory whole.
+ * The rows are compressed as they come in, and the compressed data is
+ * written out in IDAT chunks whenever a chunk fills up.
+ * <p>
+ * The rows are compressed in parallel, the way pigz does it: they are cut
+ * into blocks that are each compressed on their own, primed with the data
+ * that comes before them as a dictionary so that they compress nearly as
+ * well as one stream would. Each block but the last ends on a byte
+ * boundary, so that the compressed blocks put one after another form a
+ * single valid stream.
+ *
+ * @author Jeff Niu
+ */
+public class PngWriter implements Closeable {
+
+    /**
+     * The PNG file signature.
+     */
+    private static final byte[] SIGNATURE
+            = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    /**
+     * The size of the IDAT chunks, in bytes.
+     */
+    private static final int CHUNK = 1 << 16;
+    /**
+     * The number of bytes in a pixel.
+     */
+    private static final int BPP = 3;
+    /**
+     * The number of bytes of rows in each block that is compressed on its
+     * own.
+     */
+    private static final int BLOCK = 1 << 17;
+    /**
+     * The number of bytes before a block with which it is primed, the
+     * largest distance that deflate looks back.
+     */
+    private static final int WINDOW = 1 << 15;
+    /**
+     * The zlib header of the compressed data: deflate with a 32K window,
+     * at the default level.
+     */
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9c};
+
+    /**
+     * The stream to which the image is written.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The image width and height.
+     */
+    private final int W, H;
+
+    /**
+     * The checksum of all of the rows, which ends the compressed data.
+     */
+    private final Adler32 adler;
+
+    /**
+     * The last bytes of the rows written so far, with which the next block
+     * is primed.
+     */
+    private byte[] window;
+
+    /**
+     * The compressed data of the chunk being filled.
+     */
+    private final byte[] chunk;
+    /**
+     * The number of bytes of the chunk that have been filled.
+     */
+    private int length;
+
+    /**
+     * The number of rows written so far.
+     */
+    private int rows;
+
+    /**
+     * Create a new PNG writer and write the header of the image.
+     *
+     * @param out the stream to which to write the image
+     * @param W the image width
+     * @param H the image height
+     * @throws IOException if the header cannot be written
+     */
+    public PngWriter(OutputStream out, int W, int H) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.W = W;
+        this.H = H;
+        adler = new Adler32();
+        window = new byte[0];
+        chunk = new byte[CHUNK];
+        this.out.write(SIGNATURE);
+        // 8-bit truecolor, no interlacing
+        byte[] header = new byte[13];
+        writeInt(header, 0, W);
+        writeInt(header, 4, H);
+        header[8] = 8;
+        header[9] = 2;
+        writeChunk("IHDR", header, header.length);
+        append(ZLIB_HEADER, ZLIB_HEADER.length);
+    }
+
+    /**
+     * Write the next rows of the image, compressing them in parallel.
+     *
+     * @param rgb the RGB values of whole rows, row by row
+     * @throws IOException if the rows cannot be written
+     */
+    public void write(int[] rgb) throws IOException {
+        // The rows are left unfiltered, since the colors of a fractal come
+        // in runs that compress better as they are than as differences
+        int n = rgb.length / W;
+        int stride = 1 + BPP * W;
+        byte[] data = new byte[n * stride];
+        for (int i = 0; i < n; i++) {
+            for (int r = 0; r < W; r++) {
+                int c = rgb[i * W + r];
+                data[i * stride + 1 + BPP * r] = (byte) (c >> 16);
+                data[i * stride + 2 + BPP * r] = (byte) (c >> 8);
+                data[i * stride + 3 + BPP * r] = (byte) c;
+            }
+        }
+        rows += n;
+        adler.update(data);
+        boolean last = rows >= H;
+        List<Callable<byte[]>> blocks = new ArrayList<>();
+        for (int start = 0; start < data.length; start += BLOCK) {
+            int end = Math.min(start + BLOCK, data.length);
+            byte[] dictionary = start == 0 ? window
+                    : Arrays.copyOfRange(data, start - WINDOW, start);
+            boolean finish = last && end == data.length;
+            int from = start;
+            blocks.add(() -> compress(data, from, end, dictionary, finish));
+        }
+        try {
+            for (Future<byte[]> block
+                    : AbstractRenderer.getPool().invokeAll(blocks)) {
+                byte[] compressed = block.get();
+                append(compressed, compressed.length);
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IOException(ex);
+        }
+        window = tail(window, data);
+    }
+
+    /**
+     * Compress a block of data on its own, as a part of a deflate stream.
+     *
+     * @param data the data
+     * @param start the start of the block
+     * @param end the end of the block
+     * @param dictionary the data before the block
+     * @param finish whether the block ends the stream
+     * @return the compressed block
+     */
+    private static byte[] compress(byte[] data, int start, int end,
+            byte[] dictionary, boolean finish) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        if (dictionary.length > 0) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(data, start, end - start);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[CHUNK];
+        if (finish) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+        } else {
+            // A sync flush ends the block on a byte boundary
+            int n;
+            do {
+                n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                out.write(buf, 0, n);
+            } while (n == buf.length);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /**
+     * Find the last bytes of two arrays put one after the other, as many
+     * as there are in a window.
+     *
+     * @param a the first array
+     * @param b the second array
+     * @return the last bytes
+     */
+    private static byte[] tail(byte[] a, byte[] b) {
+        if (b.length >= WINDOW) {
+            return Arrays.copyOfRange(b, b.length - WINDOW, b.length);
+        }
+        int n = Math.min(WINDOW, a.length + b.length);
+        byte[] t = new byte[n];
+        int k = n - b.length;
+        System.arraycopy(a, a.length - k, t, 0, k);
+        System.arraycopy(b, 0, t, k, b.length);
+        return t;
+    }
+
+    /**
+     * Append compressed data to the chunk being filled, writing out chunks
+     * as they fill up.
+     *
+     * @param data the compressed data
+     * @param n the length of the data
+     * @throws IOException if a chunk cannot be written
+     */
+    private void append(byte[] data, int n) throws IOException {
+        int k = 0;
+        while (k < n) {
+            int m = Math.min(n - k, CHUNK - length);
+            System.arraycopy(data, k, chunk, length, m);
+            length += m;
+            k += m;
+            if (length == CHUNK) {
+                writeChunk("IDAT", chunk, length);
+                length = 0;
+            }
+        }
+    }
+
+    /**
+     * Write a chunk.
+     *
+     * @param type the chunk type
+     * @param data the chunk data
+     * @param n the length of the data
+     * @throws IOException if the chunk cannot be written
+     */
+    private void writeChunk(String type, byte[] data, int n)
+            throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, n);
+        out.writeInt(n);
+        out.write(name);
+        out.write(data, 0, n);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Write an int into a byte array, most significant byte first.
+     *
+     * @param a the byte array
+     * @param k the index at which to write
+     * @param v the int
+     */
+    private static void writeInt(byte[] a, int k, int v) {
+        a[k] = (byte) (v >> 24);
+        a[k + 1] = (byte) (v >> 16);
+        a[k + 2] = (byte) (v >> 8);
+        a[k + 3] = (byte) v;
+    }
+
+    /**
+     * Finish the image and close the stream.
+     *
+     * @throws IOException if the image cannot be finished, or if fewer
+     * rows have been written than the image has
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rows != H) {
+                throw new IOException("Wrote " + rows + " of " + H
+                        + " rows.");
+            }
+            byte[] checksum = new byte[4];
+            writeInt(checksum, 0, (int) adler.getValue());
+            append(checksum, checksum.length);
+            writeChunk("IDAT", chunk, length);
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package recursion;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A tool that colors an escape time archive with a color map and saves it
+ * as a PNG image, without computing a single orbit. The color map is a
+ * spectrum, given by its name, or a palette sampled from it when a sample
+ * rate is given.
+ *
+ * @author Jeff Niu
+ */
+public class Recolor {
+
+    /**
+     * Recolor an archive.
+     *
+     * @param args the archive file, the image file, the name of the
+     * spectrum, and optionally the sample rate of the palette
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Usage: Recolor archive image spectrum "
+                    + "[sample rate]");
+            System.exit(1);
+        }
+        Spectrum spectrum = Spectrum.forName(args[2]);
+        if (spectrum == null) {
+            System.err.println("No spectrum named " + args[2] + ".");
+            System.exit(1);
+        }
+        ColorMap cm = spectrum;
+        if (args.length == 4) {
+            int rate;
+            try {
+                rate = Integer.parseInt(args[3]);
+            } catch (NumberFormatException ex) {
+                rate = -1;
+            }
+            if (rate <= 0) {
+                System.err.println("Invalid sample rate " + args[3] + ".");
+                System.exit(1);
+            }
+            cm = Palette.getPalette(spectrum, rate);
+        }
+        long t = System.nanoTime();
+        try (EscapeArchive archive = new EscapeArchive(new File(args[0]))) {
+            archive.recolor(cm, new File(args[1]));
+        } catch (IOException ex) {
+            System.err.println("Recolor failed: " + ex.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("Recolored in %.3f s%n",
+                (System.nanoTime() - t) / 1e9);
+    }
+
+}
@@ -0,0 +1,108 @@
+package recursion;
+
+import java.util.concurrent.RecursiveAction;
+import static recursion.AbstractRenderThread.INSIDE;
+
+/**
+ * A render task renders a rectangular region of a fractal. Regions larger
+ * than a tile are split in half and forked, so that workers that run out
+ * of work can steal tiles from those that are still busy. This balances
+ * the load far better than fixed strips, since the pixels near the
+ * fractal take orders of magnitude longer to compute than the rest.
+ *
+ * @author Jeff Niu
+ */
+@SuppressWarnings("serial")
+public class RenderTask extends RecursiveAction {
+
+    /**
+     * The tile dimension. Regions no larger than a tile are rendered
+     * directly instead of being split.
+     */
+    public static final int TILE = 32;
+    /**
+     * The smallest region that is subdivided further when uniform regions
+     * are being skipped.
+     */
+    public static final int MIN_SUBDIVISION = 8;
+
+    /**
+     * The render thread through which the pixels are computed.
+     */
+    private final AbstractRenderThread thread;
+
+    /**
+     * The region of pixels to render and the step of the pixel grid.
+     */
+    private final int Wi, Wf, Hi, Hf, step;
+
+    /**
+     * Whether regions with a uniform border are filled instead of being
+     * rendered.
+     */
+    private final boolean subdivide;
+
+    /**
+     * Create a new render task.
+     *
+     * @param thread the render thread
+     * @param Wi the start x
+     * @param Wf the finish x
+     * @param Hi the start y
+     * @param Hf the finish y
+     * @param step the grid step; only every step-th pixel is rendered
+     * @param subdivide whether to fill regions that have a uniform border
+     */
+    public RenderTask(AbstractRenderThread thread,
+            int Wi, int Wf, int Hi, int Hf, int step, boolean subdivide) {
+        this.thread = thread;
+        this.Wi = Wi;
+        this.Wf = Wf;
+        this.Hi = Hi;
+        this.Hf = Hf;
+        this.step = step;
+        this.subdivide = subdivide;
+    }
+
+    /**
+     * Render the region, splitting it along its longer side if it is
+     * larger than a tile. Nothing is rendered once the render has been
+     * cancelled.
+     * <p>
+     * When subdividing (the Mariani-Silver algorithm), only the border of
+     * the region is rendered at first. The set is connected and has no
+     * holes, so a region whose border lies entirely inside the set is
+     * inside the set too and is filled. Otherwise the region is split and
+     * each half is checked in turn, down to small regions that are
+     * rendered directly. Regions with a border of any other uniform value
+     * are not filled, since a piece of the set may lie wholly inside them.
+     */
+    @Override
+    protected void compute() {
+        if (thread.isCancelled()) {
+            return;
+        }
+        int W = Wf - Wi;
+        int H = Hf - Hi;
+        int tile = TILE;
+        if (subdivide) {
+            if (thread.renderBorder(Wi, Wf, Hi, Hf, step)) {
+                thread.fill(Wi, Wf, Hi, Hf, step, INSIDE);
+                return;
+            }
+            tile = MIN_SUBDIVISION;
+        }
+        if (W <= tile && H <= tile) {
+            thread.render(Wi, Wf, Hi, Hf, step);
+        } else if (W >= H) {
+            int m = Wi + W / 2;
+            invokeAll(new RenderTask(thread, Wi, m, Hi, Hf, step, subdivide),
+                    new RenderTask(thread, m, Wf, Hi, Hf, step, subdivide));
+        } else {
+            int m = Hi + H / 2;
+            invokeAll(new RenderTask(thread, Wi, Wf, Hi, m, step, subdivide),
+                    new RenderTask(thread, Wi, Wf, m, Hf, step, subdivide));
+        }
+    }
+
+}
@@ -62,6 +62,23 @@ public class Spectrum implements ColorMap {
         BlackYellowBlue();
     }
 
+    /**
+     * Find a color spectrum by its name, ignoring case.
+     *
+     * @param name the name of the spectrum
+     * @return the spectrum, or null if there is none by the name
+     */
+    public static Spectrum forName(String name) {
+        Spectrum[] spectra = {GreyScale, Rainbow, RedOrange, BlackGoldYellow,
+            BlackYellowPurple, BlackYellowBlue};
+        for (Spectrum spectrum : spectra) {
+            if (spectrum.name.equalsIgnoreCase(name)) {
+                return spectrum;
+            }
+        }
+        return null;
+    }
+
     private static void GreyScale() {
         Color black = new Color(0, 0, 0);
         Color white = new Color(255, 255, 255);
@@ -199,6 +216,12 @@ public class Spectrum implements ColorMap {
      */
     private final double[] Fcul;
 
+    /**
+     * The RGB values of every escape time value, for the maximum escape
+     * time for which they were last asked.
+     */
+    private volatile int[] table;
+
     /**
      * Create a spectrum from an array of color indices.
      *
@@ -261,8 +284,25 @@ public class Spectrum implements ColorMap {
         int R = R1[g] + (int) (dR[g] * f);
         int G = G1[g] + (int) (dG[g] * f);
         int B = B1[g] + (int) (dB[g] * f);
-        int rgb = new Color(R, G, B).getRGB();
-        return rgb;
+        return 0xff000000 | R << 16 | G << 8 | B;
+    }
+
+    /**
+     * Get the RGB values of every escape time value up to the maximum. The
+     * table is kept, so that it is only computed again when the maximum
+     * changes.
+     *
+     * @param T the maximum escape time
+     * @return the RGB values, indexed by escape time
+     */
+    @Override
+    public int[] getTable(int T) {
+        int[] table = this.table;
+        if (table == null || table.length != T + 1) {
+            table = ColorMap.super.getTable(T);
+            this.table = table;
+        }
+        return table;
     }
 
     /**
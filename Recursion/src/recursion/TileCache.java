@@ -0,0 +1,364 @@
+package recursion;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static java.lang.Math.abs;
+import static java.lang.Math.ceil;
+import static java.lang.Math.log10;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static recursion.AbstractRenderThread.UNKNOWN;
+
+/**
+ * A cache of the escape time values of square tiles of the plane, so that
+ * the regions of a view that have been computed before do not have to be
+ * computed again. At a pixel spacing h, the pixels of every view lie on
+ * the lattice of the points (g h, k h) for whole g and k, provided the view
+ * is centered on it; the lattice is cut into tiles that are cached by the
+ * fractal, the maximum iterations, the pixel spacing and their place on
+ * the lattice. Views that are panned by whole pixels or zoomed by whole
+ * factors from the default view all stay on their lattices.
+ * <p>
+ * The lattices of spacings h, 2h, 4h and so on form a pyramid: every
+ * other pixel of a tile lies on a pixel of the tile of spacing 2h above
+ * it. Pixels missing from a tile are taken from the tiles above, so that
+ * a view zoomed in by two or rendered at twice the size starts with a
+ * quarter of its pixels. The least recently used tiles are evicted once
+ * the tiles take more memory than the budget.
+ *
+ * @author Jeff Niu
+ */
+public class TileCache {
+
+    /**
+     * The number of levels of the pyramid above a tile from which its
+     * pixels are taken. Higher levels would give at most one pixel.
+     */
+    private static final int LEVELS = 6;
+    /**
+     * The tile dimension.
+     */
+    public static final int TILE = 1 << LEVELS;
+    /**
+     * The fraction of a pixel by which the pixels of a view may miss the
+     * lattice for the view to be cached. Views that miss it by more than
+     * rounding have pixels at other points than those of the tiles.
+     */
+    private static final double LATTICE_TOLERANCE = 1e-9;
+    /**
+     * The number of digits after the point to which the place of a view on
+     * the lattice is computed.
+     */
+    private static final int LATTICE_DIGITS = 10;
+    /**
+     * The memory taken by a tile, in bytes.
+     */
+    private static final long TILE_BYTES = 4L * TILE * TILE;
+
+    /**
+     * The cached tiles, from least to most recently used.
+     */
+    private final LinkedHashMap<String, int[]> tiles;
+
+    /**
+     * The memory that the tiles may take, in bytes.
+     */
+    private long budget;
+
+    /**
+     * Create a new tile cache.
+     *
+     * @param budget the memory that the tiles may take, in bytes
+     */
+    public TileCache(long budget) {
+        tiles = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> e) {
+                return size() * TILE_BYTES > TileCache.this.budget;
+            }
+        };
+        this.budget = budget;
+    }
+
+    /**
+     * Set the memory that the tiles may take, evicting the least recently
+     * used tiles until they fit in it.
+     *
+     * @param budget the memory budget, in bytes
+     */
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        while (!tiles.isEmpty() && tiles.size() * TILE_BYTES > budget) {
+            tiles.remove(tiles.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * @return the memory that the tiles may take, in bytes
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Evict every tile.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+    }
+
+    /**
+     * Fill in the pixels of a view that have no value from the cached
+     * tiles, or from the tiles above them in the pyramid.
+     *
+     * @param values the escape time values
+     * @param N the render dimension
+     * @param fractal the name of the fractal
+     * @param T the maximum iterations
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     */
+    public void load(int[] values, int N, String fractal, int T,
+            BigDecimal xc, BigDecimal yc, double s) {
+        double h = s / N;
+        BigInteger gx = toLattice(xc, h, N);
+        BigInteger gy = toLattice(yc, h, N);
+        if (gx == null || gy == null) {
+            return;
+        }
+        BigInteger tx = floorTile(gx);
+        BigInteger ty = floorTile(gy);
+        int ox = gx.subtract(tx.shiftLeft(LEVELS)).intValue();
+        int oy = gy.subtract(ty.shiftLeft(LEVELS)).intValue();
+        for (int a = 0; a * TILE < ox + N; a++) {
+            for (int b = 0; b * TILE < oy + N; b++) {
+                int[] tile = find(fractal, T, h,
+                        tx.add(BigInteger.valueOf(a)),
+                        ty.add(BigInteger.valueOf(b)));
+                if (tile != null) {
+                    copy(tile, values, N, a * TILE - ox, b * TILE - oy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cache the computed pixels of a view. Tiles at the edge of the view
+     * are merged with those already cached, and those that are cached in
+     * full are left as they are.
+     *
+     * @param values the escape time values
+     * @param N the render dimension
+     * @param fractal the name of the fractal
+     * @param T the maximum iterations
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     */
+    public void store(int[] values, int N, String fractal, int T,
+            BigDecimal xc, BigDecimal yc, double s) {
+        double h = s / N;
+        BigInteger gx = toLattice(xc, h, N);
+        BigInteger gy = toLattice(yc, h, N);
+        if (gx == null || gy == null) {
+            return;
+        }
+        BigInteger tx = floorTile(gx);
+        BigInteger ty = floorTile(gy);
+        int ox = gx.subtract(tx.shiftLeft(LEVELS)).intValue();
+        int oy = gy.subtract(ty.shiftLeft(LEVELS)).intValue();
+        for (int a = 0; a * TILE < ox + N; a++) {
+            for (int b = 0; b * TILE < oy + N; b++) {
+                String key = getKey(fractal, T, h,
+                        tx.add(BigInteger.valueOf(a)),
+                        ty.add(BigInteger.valueOf(b)));
+                if (isComplete(key)) {
+                    continue;
+                }
+                int[] tile = new int[TILE * TILE];
+                Arrays.fill(tile, UNKNOWN);
+                int x = a * TILE - ox;
+                int y = b * TILE - oy;
+                for (int u = max(0, -x); u < min(TILE, N - x); u++) {
+                    for (int w = max(0, -y); w < min(TILE, N - y); w++) {
+                        tile[u * TILE + w] = values[(x + u) * N + y + w];
+                    }
+                }
+                put(key, tile);
+            }
+        }
+    }
+
+    /**
+     * Check whether every pixel of a tile has been cached.
+     *
+     * @param key the tile key
+     * @return whether the tile is cached in full
+     */
+    private synchronized boolean isComplete(String key) {
+        int[] tile = tiles.get(key);
+        return tile != null && !contains(tile, UNKNOWN);
+    }
+
+    /**
+     * Cache a tile, keeping the pixels of the cached tile that the new one
+     * has no value for.
+     *
+     * @param key the tile key
+     * @param tile the escape time values of the tile
+     */
+    private synchronized void put(String key, int[] tile) {
+        int[] old = tiles.get(key);
+        if (old != null) {
+            for (int k = 0; k < tile.length; k++) {
+                if (tile[k] == UNKNOWN) {
+                    tile[k] = old[k];
+                }
+            }
+        }
+        tiles.put(key, tile);
+    }
+
+    /**
+     * Find the escape time values of a tile, from the cached tile and the
+     * tiles above it in the pyramid.
+     *
+     * @param fractal the name of the fractal
+     * @param T the maximum iterations
+     * @param h the pixel spacing
+     * @param tx the tile x on the lattice
+     * @param ty the tile y on the lattice
+     * @return the values of the tile, some of which may be unknown, or
+     * null if no pixel of it has been cached
+     */
+    private synchronized int[] find(String fractal, int T, double h,
+            BigInteger tx, BigInteger ty) {
+        int[] tile = tiles.get(getKey(fractal, T, h, tx, ty));
+        if (tile != null && !contains(tile, UNKNOWN)) {
+            return tile;
+        }
+        tile = tile == null ? null : tile.clone();
+        for (int k = 1; k <= LEVELS; k++) {
+            int[] up = tiles.get(getKey(fractal, T, h * (1 << k),
+                    tx.shiftRight(k), ty.shiftRight(k)));
+            if (up == null) {
+                continue;
+            }
+            if (tile == null) {
+                tile = new int[TILE * TILE];
+                Arrays.fill(tile, UNKNOWN);
+            }
+            // Every 2^k-th pixel of the tile lies on a pixel of the tile
+            // 2^k times as coarse, which holds 2^k by 2^k tiles
+            int mask = (1 << k) - 1;
+            int ux = tx.intValue() & mask;
+            int uy = ty.intValue() & mask;
+            for (int u = 0; u < TILE; u += 1 << k) {
+                for (int w = 0; w < TILE; w += 1 << k) {
+                    int g = u * TILE + w;
+                    if (tile[g] == UNKNOWN) {
+                        tile[g] = up[((ux * TILE + u) >> k) * TILE
+                                + ((uy * TILE + w) >> k)];
+                    }
+                }
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Copy the known escape time values of a tile onto the pixels of a view
+     * that have none.
+     *
+     * @param tile the escape time values of the tile
+     * @param values the escape time values of the view
+     * @param N the render dimension
+     * @param x the pixel x of the tile in the view
+     * @param y the pixel y of the tile in the view
+     */
+    private static void copy(int[] tile, int[] values, int N, int x, int y) {
+        for (int u = max(0, -x); u < min(TILE, N - x); u++) {
+            for (int w = max(0, -y); w < min(TILE, N - y); w++) {
+                int g = (x + u) * N + y + w;
+                if (values[g] == UNKNOWN) {
+                    values[g] = tile[u * TILE + w];
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether an array contains a value.
+     *
+     * @param a the array
+     * @param value the value
+     * @return whether the value is in the array
+     */
+    private static boolean contains(int[] a, int value) {
+        for (int v : a) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the key of a tile.
+     *
+     * @param fractal the name of the fractal
+     * @param T the maximum iterations
+     * @param h the pixel spacing
+     * @param tx the tile x on the lattice
+     * @param ty the tile y on the lattice
+     * @return the tile key
+     */
+    private static String getKey(String fractal, int T, double h,
+            BigInteger tx, BigInteger ty) {
+        return fractal + " " + T + " " + h + " " + tx + " " + ty;
+    }
+
+    /**
+     * Get the tile of the lattice that holds a pixel.
+     *
+     * @param g the pixel on the lattice
+     * @return the tile on the lattice
+     */
+    private static BigInteger floorTile(BigInteger g) {
+        // Shifting rounds toward negative infinity
+        return g.shiftRight(LEVELS);
+    }
+
+    /**
+     * Find the pixel of the lattice on which the first pixel of a view lies
+     * along one axis.
+     *
+     * @param c the center along the axis
+     * @param h the pixel spacing
+     * @param N the render dimension
+     * @return the pixel on the lattice, or null if the pixels of the view
+     * do not lie on the lattice
+     */
+    private static BigInteger toLattice(BigDecimal c, double h, int N) {
+        double q = abs(c.doubleValue()) / h;
+        if (Double.isInfinite(q) || Double.isNaN(q)) {
+            return null;
+        }
+        MathContext mc = new MathContext(LATTICE_DIGITS
+                + max(1, (int) ceil(log10(q + 1))));
+        BigDecimal g = c.divide(new BigDecimal(h), mc)
+                .subtract(BigDecimal.valueOf(N / 2.0));
+        BigDecimal whole = g.setScale(0, RoundingMode.HALF_EVEN);
+        if (g.subtract(whole).abs().doubleValue() > LATTICE_TOLERANCE) {
+            return null;
+        }
+        return whole.toBigInteger();
+    }
+
+}
@@ -0,0 +1,70 @@
+package recursion;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that renders that take pixels from the tile cache have the same
+ * escape time values as renders that compute every pixel.
+ *
+ * @author Jeff Niu
+ */
+public class CacheTest {
+
+    /**
+     * The render dimension.
+     */
+    private static final int N = 512;
+
+    /**
+     * Render a view of the Mandelbrot set.
+     *
+     * @param T the maximum iterations
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @param cached whether to use the tile cache
+     * @param subdivide whether to subdivide
+     * @return the escape time values
+     */
+    private static int[] render(int T, double xc, double yc, double s,
+            boolean cached, boolean subdivide) {
+        AbstractRenderer renderer = new MandelbrotRenderer(N, T);
+        renderer.setCached(cached);
+        renderer.setSubdivide(subdivide);
+        int[] values = renderer.createValues();
+        renderer.compute(values, new BigDecimal(xc), new BigDecimal(yc),
+                s, 1);
+        return values;
+    }
+
+    /**
+     * Views that miss the lattice of a cached view by a small fraction of a
+     * pixel have their pixels at other points, so they take none from it.
+     */
+    @Test
+    public void testOffLattice() {
+        double xc = -0.75;
+        double yc = 0.1015625;
+        double s = 0.5;
+        render(1000, xc, yc, s, true, false);
+        for (double d : new double[]{5e-4, 1e-4, 1e-5}) {
+            double y = yc + d * s / N;
+            assertArrayEquals(render(1000, xc, y, s, false, false),
+                    render(1000, xc, y, s, true, false));
+        }
+    }
+
+    /**
+     * A subdivided render, which may fill filaments as inside, leaves
+     * nothing in the cache for a later render without subdivision.
+     */
+    @Test
+    public void testSubdivided() {
+        render(999, -0.75, 0.1, 0.05, true, true);
+        assertArrayEquals(render(999, -0.75, 0.1, 0.05, false, false),
+                render(999, -0.75, 0.1, 0.05, true, false));
+    }
+
+}
@@ -0,0 +1,49 @@
+package recursion;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the fractions of the escape times by which the Mandelbrot set
+ * is colored smoothly stay near the range of zero to one.
+ *
+ * @author Jeff Niu
+ */
+public class SmoothTest {
+
+    /**
+     * The render dimension.
+     */
+    private static final int N = 256;
+
+    /**
+     * The orbit of c = -2 stays at |z| = 2 once it escapes, so it never
+     * leaves the radius at which the fraction is found.
+     */
+    @Test
+    public void testStuckOrbit() {
+        assertEquals(0, AbstractRenderThread.fraction(2, 0, -2, 0), 0);
+    }
+
+    /**
+     * The left middle pixel of the default view is c = -2, and no other
+     * fraction is near as large as the iterations the orbit is followed
+     * for. Those just above c = -2, whose orbits grow slowly after they
+     * escape, stray the furthest, by a few iterations.
+     */
+    @Test
+    public void testDefaultView() {
+        AbstractRenderer renderer = new MandelbrotRenderer(N, 256);
+        int[] values = renderer.createValues();
+        float[] fractions = renderer.createFractions();
+        renderer.compute(values, fractions, BigDecimal.ZERO,
+                BigDecimal.ZERO, 4, 1);
+        assertEquals(0, fractions[N / 2], 0);
+        for (float f : fractions) {
+            assertTrue(f > -1 && f < 8);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package recursion;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that rendering by rectangle subdivision gives the same escape time
+ * values as computing every pixel.
+ *
+ * @author Jeff Niu
+ */
+public class SubdivisionTest {
+
+    /**
+     * The render dimension.
+     */
+    private static final int N = 512;
+
+    /**
+     * The most pixels in ten thousand that subdivision may fill as inside
+     * when a filament slips between the samples of a region's border.
+     */
+    private static final int MAX_FILLED = 1;
+
+    /**
+     * Render a view plainly and by subdivision.
+     *
+     * @param plain the renderer to compute every pixel with
+     * @param subdivided the renderer to subdivide with
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     * @return the plain and the subdivided escape time values
+     */
+    private static int[][] render(AbstractRenderer plain,
+            AbstractRenderer subdivided, double xc, double yc, double s) {
+        plain.setCached(false);
+        subdivided.setCached(false);
+        subdivided.setSubdivide(true);
+        int[][] values = {plain.createValues(), subdivided.createValues()};
+        plain.compute(values[0], new BigDecimal(xc), new BigDecimal(yc),
+                s, 1);
+        subdivided.compute(values[1], new BigDecimal(xc),
+                new BigDecimal(yc), s, 1);
+        return values;
+    }
+
+    /**
+     * The default view of the Mandelbrot set.
+     */
+    @Test
+    public void testDefaultView() {
+        int[][] values = render(new MandelbrotRenderer(N, 256),
+                new MandelbrotRenderer(N, 256), 0, 0, 4);
+        assertArrayEquals(values[0], values[1]);
+    }
+
+    /**
+     * A deep view of seahorse valley.
+     */
+    @Test
+    public void testSeahorseValley() {
+        int[][] values = render(new MandelbrotRenderer(N, 5000),
+                new MandelbrotRenderer(N, 5000),
+                -0.7436447860, 0.1318252536, 3e-5);
+        assertArrayEquals(values[0], values[1]);
+    }
+
+    /**
+     * A Julia set, c = -0.8 + 0.156i.
+     */
+    @Test
+    public void testJulia() {
+        int[][] values = render(new JuliaRenderer(N, 1000, -0.8, 0.156),
+                new JuliaRenderer(N, 1000, -0.8, 0.156), 0, 0, 3);
+        assertArrayEquals(values[0], values[1]);
+    }
+
+    /**
+     * A view crossed by filaments thinner than a pixel. A filament may
+     * slip between the border samples of a region that is then filled as
+     * inside, which is the one way subdivision can differ, so every pixel
+     * that differs is filled as inside, and only a few pixels do.
+     */
+    @Test
+    public void testFilaments() {
+        int[][] values = render(new MandelbrotRenderer(N, 1000),
+                new MandelbrotRenderer(N, 1000), -0.75, 0.1, 0.05);
+        int differ = 0;
+        for (int k = 0; k < values[0].length; k++) {
+            if (values[0][k] != values[1][k]) {
+                differ++;
+                assertEquals(AbstractRenderThread.INSIDE, values[1][k]);
+            }
+        }
+        assertTrue(differ <= values[0].length / 10000 * MAX_FILLED);
+    }
+
+}
@@ -0,0 +1,88 @@
+package recursion;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that a render streamed out a band at a time is supersampled at the
+ * edges between its pixels, those across the borders between bands as well
+ * as those within them.
+ *
+ * @author Jeff Niu
+ */
+public class SupersampleTest {
+
+    /**
+     * The render dimension, which is two bands high.
+     */
+    private static final int N = 1024;
+
+    /**
+     * The maximum iterations.
+     */
+    private static final int T = 256;
+
+    /**
+     * Check whether a pixel differs from a neighbour by more than the edge
+     * threshold.
+     *
+     * @param values the escape time values of the render, row by row
+     * @param x the x of the pixel
+     * @param y the y of the pixel
+     * @param from the first row whose neighbours are looked at
+     * @param to the row after the last
+     * @return whether the pixel is on an edge
+     */
+    private static boolean isEdge(int[] values, int x, int y, int from,
+            int to) {
+        int v = values[y * N + x];
+        return x > 0 && Math.abs(v - values[y * N + x - 1]) > 1
+                || x < N - 1 && Math.abs(v - values[y * N + x + 1]) > 1
+                || y > from && Math.abs(v - values[(y - 1) * N + x]) > 1
+                || y < to - 1 && Math.abs(v - values[(y + 1) * N + x]) > 1;
+    }
+
+    /**
+     * A view crossed by filaments, whose pixels along the border between
+     * its bands include some that are edges only across the border.
+     */
+    @Test
+    public void testBandBorders() {
+        BigDecimal xc = new BigDecimal(-0.75);
+        BigDecimal yc = new BigDecimal(0.1);
+        double s = 0.05;
+        AbstractRenderer renderer = new MandelbrotRenderer(N, T);
+        renderer.setCached(false);
+        int B = renderer.getBand();
+        int[] values = new int[N * N];
+        int[][] bands = new int[N / B][];
+        for (int y = 0; y < N; y += B) {
+            bands[y / B] = renderer.computeBand(xc, yc, s, y);
+            System.arraycopy(bands[y / B], 0, values, y * N, B * N);
+        }
+        int across = 0;
+        for (int y = 0; y < N; y += B) {
+            int[] before = y > 0 ? bands[y / B - 1] : null;
+            int[] after = y + B < N ? bands[y / B + 1] : null;
+            int[] rgb = renderer.supersample(Spectrum.GreyScale, bands[y / B],
+                    null, before, after, xc, yc, s, y, 4);
+            int[] plain = renderer.colorBand(Spectrum.GreyScale,
+                    bands[y / B]);
+            for (int i = 0; i < B; i++) {
+                for (int x = 0; x < N; x++) {
+                    boolean changed = rgb[i * N + x] != plain[i * N + x];
+                    if (changed) {
+                        assertTrue(isEdge(values, x, y + i, 0, N));
+                    }
+                    if (changed && !isEdge(values, x, y + i, y, y + B)) {
+                        across++;
+                    }
+                }
+            }
+        }
+        assertFalse(across == 0);
+    }
+
+}
@@ -0,0 +1,88 @@
+package recursion;
+
+import java.math.BigDecimal;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that views of the Mandelbrot set that are mirrored across the real
+ * axis have the same escape time values as computing every pixel, and
+ * that views whose pixels do not line up with their mirror images are not
+ * mirrored.
+ *
+ * @author Jeff Niu
+ */
+public class SymmetryTest {
+
+    /**
+     * The render dimension.
+     */
+    private static final int N = 256;
+
+    /**
+     * The maximum iterations.
+     */
+    private static final int T = 1000;
+
+    /**
+     * Check a render of a view against iterating every pixel by brute
+     * force.
+     *
+     * @param xc the center x
+     * @param yc the center y
+     * @param s the zoom scale
+     */
+    private static void check(double xc, double yc, double s) {
+        AbstractRenderer renderer = new MandelbrotRenderer(N, T);
+        renderer.setCached(false);
+        int[] values = renderer.createValues();
+        renderer.compute(values, new BigDecimal(xc), new BigDecimal(yc),
+                s, 1);
+        int[] expected = new int[N * N];
+        for (int r = 0; r < N; r++) {
+            for (int i = 0; i < N; i++) {
+                double x0 = xc + s * (r / (double) N - 0.5);
+                double y0 = yc + s * (i / (double) N - 0.5);
+                double x = 0;
+                double y = 0;
+                int t = 0;
+                while (x * x + y * y < 4 && t < T) {
+                    double xt = x * x - y * y + x0;
+                    y = 2 * x * y + y0;
+                    x = xt;
+                    t++;
+                }
+                expected[r * N + i] = T - t;
+            }
+        }
+        assertArrayEquals(expected, values);
+    }
+
+    /**
+     * A view centered on the real axis, which is mirrored.
+     */
+    @Test
+    public void testCentered() {
+        check(-0.5, 0, 3);
+    }
+
+    /**
+     * A view a whole number of pixels off the real axis, which is
+     * mirrored.
+     */
+    @Test
+    public void testWholePixels() {
+        check(-0.5, 3.0 * 5 / N, 3);
+    }
+
+    /**
+     * Views about a ten thousandth of a pixel off lining up with their
+     * mirror images, which must not be mirrored.
+     */
+    @Test
+    public void testMisaligned() {
+        check(-0.5, 0.00586, 3);
+        check(-0.5, 0.0058594, 3);
+    }
+
+}